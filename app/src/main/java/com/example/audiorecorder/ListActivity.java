@@ -1,6 +1,7 @@
 package com.example.audiorecorder;
 
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -12,11 +13,16 @@ import android.provider.MediaStore;
 import android.view.ActionMode;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
+import android.widget.EditText;
 import android.widget.Toast;
 
+import com.example.audiorecorder.audio.AdpcmWavWriter;
 import com.example.audiorecorder.audio.WavFile;
 import com.example.audiorecorder.list.RecordingAdapter;
+import com.example.audiorecorder.list.RecordingIndex;
 import com.example.audiorecorder.list.RecordingItem;
+import com.example.audiorecorder.list.WaveformLoader;
 import com.example.audiorecorder.utils.AppUtils;
 
 import java.io.File;
@@ -24,9 +30,13 @@ import java.io.IOException;
 
 import java.util.ArrayList;
 
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ListActivity extends AppCompatActivity {
+	private static final int LOAD_BATCH_SIZE = 16;
+
 	RecyclerView recyclerView;
 	RecordingAdapter adapter;
 	RecyclerView.LayoutManager layoutManager;
@@ -35,11 +45,15 @@ public class ListActivity extends AppCompatActivity {
 	ArrayList<Integer> checkedPositions;
 
 	ActionMode actionMode;
-	ActionMode.Callback callbackMergeMode, callbackDeleteMode;
+	ActionMode.Callback callbackMergeMode, callbackDeleteMode, callbackExportMode,
+			callbackEditMode;
 
 	MediaPlayer mediaPlayer;
 	int recentlyPlayedPosition = RecyclerView.NO_POSITION;
 
+	ExecutorService executor;
+	WaveformLoader waveformLoader;
+
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
@@ -47,33 +61,68 @@ public class ListActivity extends AppCompatActivity {
 
 		checkedPositions = new ArrayList<>();
 		recordingItems = new ArrayList<>();
-		loadRecordings();
+		executor = Executors.newSingleThreadExecutor();
+		waveformLoader = new WaveformLoader(AppUtils.getRecordingsDir(this), item -> {
+			int position = recordingItems.indexOf(item);
+			if (position >= 0) adapter.notifyItemChanged(position);
+		});
 		buildRecyclerView();
 		buildActionModeCallbacks();
 		buildMediaPlayer();
+		loadRecordings();
 	}
 
 
 	private void loadRecordings() {
 		recordingItems.clear();
+		adapter.notifyDataSetChanged();
+
+		executor.execute(() -> {
+			ArrayList<File> recordings = AppUtils.listRecordingFiles(this);
+			RecordingIndex index = new RecordingIndex(AppUtils.getRecordingsDir(this));
+			index.retainAll(recordings);
+
+			ArrayList<RecordingItem> batch = new ArrayList<>();
+
+			for (File recording : recordings) {
+				HashMap<String, String> metadata = index.getMetadata(recording);
+				if (metadata != null)
+					batch.add(createRecordingItem(recording, metadata));
 
-		for (File recording : AppUtils.listRecordingFiles(this)) {
-			WavFile wavFile = WavFile.fromFile(recording);
-			if (wavFile != null) {
-				String nameSurname = wavFile.getMetadata(WavFile.NAME_TAG) + " " +
-						wavFile.getMetadata(WavFile.SURNAME_TAG);
-				String title = wavFile.getMetadata(WavFile.TITLE_TAG);
-				String comment = wavFile.getMetadata(WavFile.COMMENT_TAG);
-				String date = wavFile.getMetadata(WavFile.DATE_TAG);
-				String time = wavFile.getMetadata(WavFile.TIME_TAG);
-				int image = R.drawable.ic_play;
-
-				RecordingItem recordingItem = new RecordingItem(image, nameSurname, date, time,
-						title, comment, recording.toURI());
-
-				recordingItems.add(recordingItem);
+				if (batch.size() >= LOAD_BATCH_SIZE) {
+					publishRecordings(batch);
+					batch = new ArrayList<>();
+				}
 			}
-		}
+
+			publishRecordings(batch);
+			index.save();
+		});
+	}
+
+	private RecordingItem createRecordingItem(File recording, HashMap<String, String> metadata) {
+		String nameSurname = metadata.get(WavFile.NAME_TAG) + " " +
+				metadata.get(WavFile.SURNAME_TAG);
+		String title = metadata.get(WavFile.TITLE_TAG);
+		String comment = metadata.get(WavFile.COMMENT_TAG);
+		String date = metadata.get(WavFile.DATE_TAG);
+		String time = metadata.get(WavFile.TIME_TAG);
+		int image = R.drawable.ic_play;
+
+		return new RecordingItem(image, nameSurname, date, time, title, comment,
+				recording.toURI());
+	}
+
+	private void publishRecordings(ArrayList<RecordingItem> batch) {
+		if (batch.isEmpty()) return;
+
+		runOnUiThread(() -> {
+			if (isDestroyed()) return;
+
+			int start = recordingItems.size();
+			recordingItems.addAll(batch);
+			adapter.notifyItemRangeInserted(start, batch.size());
+		});
 	}
 
 	private void changeItemIcon(int position, int imageResource) {
@@ -98,6 +147,12 @@ public class ListActivity extends AppCompatActivity {
 			case R.id.mergeMode:
 				onMergeMode(item);
 				return true;
+			case R.id.exportMode:
+				onExportMode(item);
+				return true;
+			case R.id.editMode:
+				onEditMode(item);
+				return true;
 			default:
 				return super.onOptionsItemSelected(item);
 		}
@@ -115,11 +170,24 @@ public class ListActivity extends AppCompatActivity {
 		adapter.updateCheckboxVisibility(true);
 	}
 
+	public void onExportMode(MenuItem item) {
+		if (actionMode == null)
+			actionMode = startActionMode(callbackExportMode);
+		adapter.updateCheckboxVisibility(true);
+	}
+
+	public void onEditMode(MenuItem item) {
+		if (actionMode == null)
+			actionMode = startActionMode(callbackEditMode);
+		adapter.updateCheckboxVisibility(true);
+	}
+
 	private void buildRecyclerView() {
 		recyclerView = findViewById(R.id.recyclerView);
 		recyclerView.setHasFixedSize(false);
 		layoutManager = new LinearLayoutManager(this);
 		adapter = new RecordingAdapter(recordingItems);
+		adapter.setWaveformLoader(waveformLoader);
 		recyclerView.setLayoutManager(layoutManager);
 		recyclerView.setAdapter(adapter);
 
@@ -149,45 +217,150 @@ public class ListActivity extends AppCompatActivity {
 	}
 
 	private void deletePositions(ArrayList<Integer> positions) {
-		ArrayList<RecordingItem> itemsToDelete = new ArrayList<>();
-
-		for (int position : positions) {
-			itemsToDelete.add(recordingItems.get(position));
-		}
+		ArrayList<RecordingItem> deletedItems = adapter.removePositions(positions);
+		checkedPositions.clear();
 
-		for (Iterator<RecordingItem> iter = recordingItems.iterator(); iter.hasNext(); ) {
-			RecordingItem item = iter.next();
-			if (itemsToDelete.contains(item)) {
-				AppUtils.deleteFile(this, item.getWavFilePath());
-				iter.remove();
+		// the rows are gone already, the files follow in the background
+		executor.execute(() -> {
+			int failed = 0;
+			for (RecordingItem item : deletedItems) {
+				File recording = new File(item.getWavFilePath());
+				if (!AppUtils.deleteFile(this, item.getWavFilePath()) && recording.exists())
+					failed++;
+				waveformLoader.evict(recording);
 			}
-		}
 
-		adapter.notifyDataSetChanged();
-		checkedPositions.clear();
+			if (failed == 0) return;
+			int failedCount = failed;
+			runOnUiThread(() -> {
+				if (isDestroyed()) return;
+				Toast.makeText(this, "Deleting " + failedCount + " recordings failed!",
+						Toast.LENGTH_SHORT).show();
+			});
+		});
 	}
 
 	private void mergePositions(ArrayList<Integer> positions) {
-		WavFile tmpWav;
 		ArrayList<RecordingItem> itemsToMerge = new ArrayList<>();
+		ArrayList<File> filesToMerge = new ArrayList<>();
 
 		for (int i = 1; i < positions.size(); i++) {
-			itemsToMerge.add(recordingItems.get(positions.get(i)));
+			RecordingItem item = recordingItems.get(positions.get(i));
+			itemsToMerge.add(item);
+			filesToMerge.add(new File(item.getWavFilePath()));
 		}
 
 		RecordingItem baseItem = recordingItems.get(positions.get(0));
-		tmpWav = WavFile.fromFile(new File(baseItem.getWavFilePath()));
+		File baseFile = new File(baseItem.getWavFilePath());
+		checkedPositions.clear();
 
-		for (RecordingItem item : itemsToMerge) {
-			WavFile wavToMerge = WavFile.fromFile(new File(item.getWavFilePath()));
-			tmpWav = WavFile.merged(tmpWav, wavToMerge);
-		}
+		executor.execute(() -> {
+			boolean merged = WavFile.mergeFiles(baseFile, filesToMerge);
+
+			runOnUiThread(() -> {
+				if (isDestroyed()) return;
+
+				if (!merged) {
+					Toast.makeText(this, "Merging failed!", Toast.LENGTH_SHORT).show();
+					return;
+				}
+
+				// the cached thumbnail no longer matches the file and is rebuilt on the next bind
+				baseItem.setWaveform(null);
+				int position = recordingItems.indexOf(baseItem);
+				if (position >= 0) adapter.notifyItemChanged(position);
+
+				ArrayList<Integer> mergedPositions = new ArrayList<>();
+				for (RecordingItem item : itemsToMerge) {
+					int mergedPosition = recordingItems.indexOf(item);
+					if (mergedPosition >= 0) mergedPositions.add(mergedPosition);
+				}
+				deletePositions(mergedPositions);
+			});
+		});
+	}
+
+	private void exportPositions(ArrayList<Integer> positions) {
+		ArrayList<File> filesToExport = new ArrayList<>();
+		for (int position : positions)
+			filesToExport.add(new File(recordingItems.get(position).getWavFilePath()));
+
+		File exportsDir = AppUtils.getExportsDir(this);
+		checkedPositions.clear();
+
+		executor.execute(() -> {
+			int exported = 0;
+			for (File file : filesToExport) {
+				if (AdpcmWavWriter.encode(file, new File(exportsDir, file.getName())))
+					exported++;
+			}
 
-		AppUtils.writeFileOnInternalStorage(this, new File(baseItem.getWavFilePath()).getName(),
-				tmpWav.toByteArray());
+			int exportedCount = exported;
+			runOnUiThread(() -> {
+				if (isDestroyed()) return;
 
-		positions.remove(0);
-		deletePositions(positions);
+				if (exportedCount < filesToExport.size())
+					Toast.makeText(this, "Exporting failed!", Toast.LENGTH_SHORT).show();
+				else
+					Toast.makeText(this, "Exported to " + exportsDir.getPath(),
+							Toast.LENGTH_SHORT).show();
+			});
+		});
+	}
+
+	private void showEditDialog(int position) {
+		RecordingItem item = recordingItems.get(position);
+		checkedPositions.clear();
+
+		View dialogView = getLayoutInflater().inflate(R.layout.dialog_edit_metadata, null);
+		EditText etTitle = dialogView.findViewById(R.id.editTextEditTitle);
+		EditText etComment = dialogView.findViewById(R.id.editTextEditComment);
+		etTitle.setText(item.getTitle());
+		etComment.setText(item.getComment());
+
+		new AlertDialog.Builder(this)
+				.setTitle(R.string.edit_recording)
+				.setView(dialogView)
+				.setPositiveButton(R.string.save, (dialog, which) ->
+						editRecording(item, etTitle.getText().toString(),
+								etComment.getText().toString()))
+				.setNegativeButton(R.string.cancel, null)
+				.show();
+	}
+
+	private void editRecording(RecordingItem item, String title, String comment) {
+		File file = new File(item.getWavFilePath());
+		HashMap<String, String> changes = new HashMap<>();
+		changes.put(WavFile.TITLE_TAG, title);
+		changes.put(WavFile.COMMENT_TAG, comment);
+
+		// only the metadata chunk at the end of the file is rewritten
+		executor.execute(() -> {
+			long length = file.length(), lastModified = file.lastModified();
+			boolean updated = WavFile.updateMetadata(file, changes);
+			if (updated) {
+				RecordingIndex index = new RecordingIndex(AppUtils.getRecordingsDir(this));
+				index.invalidate(file);
+				index.save();
+				// the audio is untouched, so the thumbnail need not be scanned again
+				waveformLoader.restamp(file, length, lastModified);
+			}
+
+			runOnUiThread(() -> {
+				if (isDestroyed()) return;
+
+				if (!updated) {
+					Toast.makeText(this, "Editing failed!", Toast.LENGTH_SHORT).show();
+					return;
+				}
+
+				int position = recordingItems.indexOf(item);
+				if (position < 0) return;
+				item.setTitle(title);
+				item.setComment(comment);
+				adapter.notifyItemChanged(position);
+			});
+		});
 	}
 
 	private void playRecording(int position) {
@@ -324,11 +497,96 @@ public class ListActivity extends AppCompatActivity {
 			}
 		};
 
+		callbackExportMode = new ActionMode.Callback() {
+			@Override
+			public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+				getMenuInflater().inflate(R.menu.list_export_menu, menu);
+				return true;
+			}
+
+			@Override
+			public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+				resetPlayback();
+				return false;
+			}
+
+			@Override
+			public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+				switch (item.getItemId()) {
+					case R.id.exportCancel:
+						mode.finish();
+						return true;
+					case R.id.exportConfirm:
+						if (checkedPositions.size() == 0)
+							Toast.makeText(getBaseContext(), "No items selected!",
+									Toast.LENGTH_SHORT).show();
+						else
+							exportPositions(checkedPositions);
+						mode.finish();
+						return true;
+					default:
+						mode.finish();
+						return false;
+				}
+			}
+
+			@Override
+			public void onDestroyActionMode(ActionMode mode) {
+				actionMode = null;
+				adapter.updateCheckboxVisibility(false);
+				adapter.setPlayButtonEnabled(true);
+			}
+		};
+
+		callbackEditMode = new ActionMode.Callback() {
+			@Override
+			public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+				getMenuInflater().inflate(R.menu.list_edit_menu, menu);
+				return true;
+			}
+
+			@Override
+			public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+				resetPlayback();
+				return false;
+			}
+
+			@Override
+			public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+				switch (item.getItemId()) {
+					case R.id.editCancel:
+						mode.finish();
+						return true;
+					case R.id.editConfirm:
+						if (checkedPositions.size() != 1)
+							Toast.makeText(getBaseContext(), "Select exactly 1 item!",
+									Toast.LENGTH_SHORT).show();
+						else
+							showEditDialog(checkedPositions.get(0));
+						mode.finish();
+						return true;
+					default:
+						mode.finish();
+						return false;
+				}
+			}
+
+			@Override
+			public void onDestroyActionMode(ActionMode mode) {
+				actionMode = null;
+				adapter.updateCheckboxVisibility(false);
+				adapter.setPlayButtonEnabled(true);
+			}
+		};
+
 	}
 
 	@Override
 	protected void onDestroy() {
 		super.onDestroy();
+		// queued deletions still run, their rows are already gone
+		executor.shutdown();
+		waveformLoader.shutdown();
 		if (mediaPlayer != null) mediaPlayer.release();
 	}
 }
\ No newline at end of file
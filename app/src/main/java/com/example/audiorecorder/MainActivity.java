@@ -8,35 +8,74 @@ import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.view.Choreographer;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ProgressBar;
+import android.widget.Spinner;
 import android.widget.Toast;
 
 import com.example.audiorecorder.audio.AudioGrabbingTask;
-import com.example.audiorecorder.audio.AudioProcessingTask;
-import com.example.audiorecorder.audio.IAudioProcessingTaskListener;
+import com.example.audiorecorder.audio.AudioLevels;
+import com.example.audiorecorder.audio.AudioRecordSource;
+import com.example.audiorecorder.audio.CaptureEngine;
+import com.example.audiorecorder.audio.CaptureProfile;
+import com.example.audiorecorder.audio.IAudioSource;
+import com.example.audiorecorder.audio.LevelMeter;
+import com.example.audiorecorder.audio.ResamplingAudioSource;
+import com.example.audiorecorder.audio.SampleFormat;
 import com.example.audiorecorder.audio.WavFile;
+import com.example.audiorecorder.audio.WavWriter;
+import com.example.audiorecorder.utils.AppUtils;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.LinkedList;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
-import static com.example.audiorecorder.utils.AppUtils.writeFileOnInternalStorage;
-
-public class MainActivity extends AppCompatActivity implements IAudioProcessingTaskListener {
+public class MainActivity extends AppCompatActivity {
 
 	ProgressBar progressBar;
+	Spinner profileSpinner;
 	Button recordButton, stopButton, deleteButton, saveButton, listButton;
 	EditText etName, etSurname, etTitle, etComment;
 
-	AudioGrabbingTask provider;
-	AudioProcessingTask processor;
-	Thread providerThread, processorThread;
+	CaptureEngine captureEngine;
+	long droppedBlocksAtResume;
+
+	// engine and draft calls that may wait for the disk run here in order, also across
+	// activity instances, so a new instance only sees the draft once the old one is done
+	private static final ExecutorService captureExecutor = Executors.newSingleThreadExecutor();
+	// touched on the main thread only; the controls stay disabled while any is running
+	private int pendingTasks = 0;
+	// a recovered draft the main thread has not taken over yet; closed by onDestroy's task on
+	// the executor if the activity goes away first, before the next instance recovers it again
+	private final AtomicReference<WavWriter> recoveredDraft = new AtomicReference<>();
+
+	// polls the capture level once per display frame; the bar only changes with a new block
+	private final Choreographer.FrameCallback levelPoller = new Choreographer.FrameCallback() {
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			if (captureEngine == null) return;
+
+			int peak = LevelMeter.peakOf(captureEngine.getLevelMeter().get());
+			int progress = Math.max(0, AudioLevels.levelToProgress(AudioLevels.peakLevel(peak)));
+			if (progress != progressBar.getProgress())
+				progressBar.setProgress(progress, true);
+
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+	};
 
-	LinkedList<byte[]> recordingAudioDraft;
+	WavWriter draftWriter;
 	RecorderState currentState;
 
 	public enum RecorderState {
@@ -50,9 +89,8 @@ public class MainActivity extends AppCompatActivity implements IAudioProcessingT
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.activity_main);
 
-		recordingAudioDraft = new LinkedList<>();
-
 		progressBar = findViewById(R.id.progressBar);
+		profileSpinner = findViewById(R.id.spinnerProfile);
 
 		stopButton = findViewById(R.id.buttonStop);
 		recordButton = findViewById(R.id.buttonRecord);
@@ -69,6 +107,77 @@ public class MainActivity extends AppCompatActivity implements IAudioProcessingT
 		checkExternalWriteReadPermission();
 
 		updateRecorderState(RecorderState.IDLE);
+		restoreDraft();
+	}
+
+	/**
+	 * Runs {@code work} on the capture executor, then {@code onDone} with its result on the
+	 * main thread, unless the activity is gone by then.
+	 */
+	private <T> void runInBackground(Supplier<T> work, Consumer<T> onDone) {
+		pendingTasks++;
+		updateRecorderState(currentState);
+
+		captureExecutor.execute(() -> {
+			T result = work.get();
+			runOnUiThread(() -> {
+				if (isDestroyed()) return;
+				pendingTasks--;
+				onDone.accept(result);
+				updateRecorderState(currentState);
+			});
+		});
+	}
+
+	private void restoreDraft() {
+		File draftFile = AppUtils.getDraftFile(this);
+
+		runInBackground(() -> {
+			if (!draftFile.exists()) return null;
+			try {
+				WavWriter writer = WavWriter.recover(draftFile);
+				recoveredDraft.set(writer);
+				return writer;
+			} catch (IOException e) {
+				e.printStackTrace();
+				draftFile.delete();
+				return null;
+			}
+		}, writer -> {
+			if (writer == null || !recoveredDraft.compareAndSet(writer, null)) return;
+			draftWriter = writer;
+
+			if (draftWriter.getAudioLength() == 0) {
+				discardDraft();
+				return;
+			}
+
+			CaptureProfile profile = draftProfile();
+			for (int i = 0; i < CaptureProfile.PRESETS.length; i++)
+				if (CaptureProfile.PRESETS[i].equals(profile))
+					profileSpinner.setSelection(i);
+
+			updateRecorderState(RecorderState.PAUSED);
+			Toast.makeText(this, "Unsaved recording restored!", Toast.LENGTH_SHORT).show();
+		});
+	}
+
+	// ends in the idle state once the draft is gone
+	private void discardDraft() {
+		WavWriter writer = draftWriter;
+		draftWriter = null;
+		File draftFile = AppUtils.getDraftFile(this);
+
+		runInBackground(() -> {
+			closeUnfinished(writer);
+			return draftFile.delete();
+		}, deleted -> updateRecorderState(RecorderState.IDLE));
+	}
+
+	// a draft keeps the profile it was started with, also after being restored
+	private CaptureProfile draftProfile() {
+		return new CaptureProfile((int) draftWriter.getSampleRate(), draftWriter.getChannels(),
+				draftWriter.getSampleFormat());
 	}
 
 	private void checkRecordPermission() {
@@ -99,23 +208,25 @@ public class MainActivity extends AppCompatActivity implements IAudioProcessingT
 	}
 
 
-	@Override
-	public void onBytesProcessed(short[] block) {
-		final int H_MAX = 32767;
-		int maxValue = Integer.MIN_VALUE;
+	private void updateRecorderState(RecorderState state) {
+		currentState = state;
 
-		for (int val : block) {
-			maxValue = Math.max(maxValue, Math.abs(val));
+		// nothing may start while engine or draft calls are still running
+		if (pendingTasks > 0) {
+			toggleMetadataFields(false);
+			profileSpinner.setEnabled(false);
+			recordButton.setEnabled(false);
+			stopButton.setEnabled(false);
+			listButton.setEnabled(false);
+			deleteButton.setEnabled(false);
+			saveButton.setEnabled(false);
+			return;
 		}
 
-		double soundLevel = 20 * Math.log((double) maxValue / H_MAX);
-		progressBar.setProgress((int) (1.25 * soundLevel + 100), true);
-	}
-
-	private void updateRecorderState(RecorderState state) {
 		switch (state) {
 			case IDLE:
 				toggleMetadataFields(false);
+				profileSpinner.setEnabled(true);
 				recordButton.setEnabled(true);
 				stopButton.setEnabled(false);
 				listButton.setEnabled(true);
@@ -124,6 +235,7 @@ public class MainActivity extends AppCompatActivity implements IAudioProcessingT
 				break;
 			case PAUSED:
 				toggleMetadataFields(true);
+				profileSpinner.setEnabled(false);
 				recordButton.setEnabled(true);
 				stopButton.setEnabled(false);
 				listButton.setEnabled(false);
@@ -132,6 +244,7 @@ public class MainActivity extends AppCompatActivity implements IAudioProcessingT
 				break;
 			case RECORDING:
 				toggleMetadataFields(false);
+				profileSpinner.setEnabled(false);
 				recordButton.setEnabled(false);
 				stopButton.setEnabled(true);
 				listButton.setEnabled(false);
@@ -139,82 +252,171 @@ public class MainActivity extends AppCompatActivity implements IAudioProcessingT
 				saveButton.setEnabled(false);
 				break;
 		}
-
-		currentState = state;
 	}
 
 
 	public void onRecordButton(View view) {
-		updateRecorderState(RecorderState.RECORDING);
-
-		LinkedBlockingQueue<short[]> audioBufferQueue = new LinkedBlockingQueue<>();
+		if (draftWriter == null) {
+			CaptureProfile profile =
+					CaptureProfile.PRESETS[profileSpinner.getSelectedItemPosition()];
+			try {
+				draftWriter = new WavWriter(AppUtils.getDraftFile(this),
+						profile.getSampleRate(), profile.getChannels(), profile.getSampleFormat());
+			} catch (IOException e) {
+				e.printStackTrace();
+				Toast.makeText(this, "Cannot create recording draft!", Toast.LENGTH_SHORT).show();
+				return;
+			}
+		}
 
-		provider = new AudioGrabbingTask(audioBufferQueue);
-		processor = new AudioProcessingTask(audioBufferQueue, recordingAudioDraft);
-		processor.setTaskListener(this);
+		if (captureEngine == null) {
+			CaptureProfile profile = draftProfile();
+			try {
+				captureEngine = new CaptureEngine(openAudioSource(profile),
+						AudioGrabbingTask.BUFFER_COUNT,
+						AudioGrabbingTask.BUFFER_SIZE * profile.getFrameSize());
+			} catch (IllegalArgumentException e) {
+				e.printStackTrace();
+				if (draftWriter.getAudioLength() == 0)
+					discardDraft();
+				Toast.makeText(this, "Capture profile not supported on this device!",
+						Toast.LENGTH_SHORT).show();
+				return;
+			}
+		}
 
-		providerThread = new Thread(provider);
-		processorThread = new Thread(processor);
+		updateRecorderState(RecorderState.RECORDING);
 
-		providerThread.start();
-		processorThread.start();
+		droppedBlocksAtResume = captureEngine.getDroppedBlocks();
+		captureEngine.resume(draftWriter);
+		Choreographer.getInstance().postFrameCallback(levelPoller);
 	}
 
-	public void onStopButton(View view) {
+	// 16-bit profiles the device cannot record directly are resampled from the default rate,
+	// which every device supports
+	private static IAudioSource openAudioSource(CaptureProfile profile) {
 		try {
-			provider.terminate();
-			processor.terminate();
-			processorThread.join();
-			providerThread.join();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+			return new AudioRecordSource(profile, AudioRecordSource.CaptureMode.DIRECT_BUFFER);
+		} catch (IllegalArgumentException e) {
+			if (profile.getSampleFormat() != SampleFormat.PCM_16 ||
+					profile.getSampleRate() == AudioGrabbingTask.SAMPLE_RATE)
+				throw e;
+
+			CaptureProfile supported = new CaptureProfile(AudioGrabbingTask.SAMPLE_RATE,
+					profile.getChannels(), SampleFormat.PCM_16);
+			return new ResamplingAudioSource(new AudioRecordSource(supported,
+					AudioRecordSource.CaptureMode.DIRECT_BUFFER), profile.getSampleRate());
 		}
+	}
 
-		if (recordingAudioDraft.isEmpty()) {
-			updateRecorderState(RecorderState.IDLE);
-			Toast.makeText(this, "Recording is empty!", Toast.LENGTH_SHORT).show();
-		} else
-			updateRecorderState(RecorderState.PAUSED);
+	// keeps the recorder warm while paused in the foreground; it is released once the draft is
+	// finished or the activity is stopped
+	private void releaseCaptureEngine() {
+		if (captureEngine == null) return;
+
+		Choreographer.getInstance().removeFrameCallback(levelPoller);
+		CaptureEngine engine = captureEngine;
+		captureEngine = null;
+
+		runInBackground(() -> {
+			try {
+				engine.release();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+			return null;
+		}, ignored -> {
+		});
+	}
 
+	public void onStopButton(View view) {
+		Choreographer.getInstance().removeFrameCallback(levelPoller);
 		progressBar.setProgress(0, true);
+
+		CaptureEngine engine = captureEngine;
+		WavWriter writer = draftWriter;
+		long droppedBlocksBefore = droppedBlocksAtResume;
+
+		// waits for the pipeline to drain into the draft, then makes the draft durable
+		runInBackground(() -> {
+			boolean drained = false;
+			try {
+				drained = engine.pause();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+			try {
+				writer.flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return drained && !engine.hasWriteFailed();
+		}, written -> {
+			long droppedBlocks = engine.getDroppedBlocks() - droppedBlocksBefore;
+			if (droppedBlocks > 0)
+				Toast.makeText(this, droppedBlocks + " audio blocks dropped!",
+						Toast.LENGTH_SHORT).show();
+
+			if (!written)
+				Toast.makeText(this, "Writing recording draft failed!", Toast.LENGTH_SHORT).show();
+
+			if (writer.getAudioLength() == 0) {
+				releaseCaptureEngine();
+				discardDraft();
+				Toast.makeText(this, "Recording is empty!", Toast.LENGTH_SHORT).show();
+			}
+		});
+		updateRecorderState(RecorderState.PAUSED);
 	}
 
 	public void onSaveButton(View view) {
-		WavFile wav = new WavFile(AudioGrabbingTask.SAMPLE_RATE, 1);
-
-		for (byte[] block : recordingAudioDraft) {
-			wav.appendAudioBytes(block);
-		}
-
-		wav.insertMetadataTag(WavFile.NAME_TAG, etName.getText().toString());
-		wav.insertMetadataTag(WavFile.SURNAME_TAG, etSurname.getText().toString());
-		wav.insertMetadataTag(WavFile.TITLE_TAG, etTitle.getText().toString());
-		wav.insertMetadataTag(WavFile.COMMENT_TAG, etComment.getText().toString());
+		draftWriter.insertMetadataTag(WavFile.NAME_TAG, etName.getText().toString());
+		draftWriter.insertMetadataTag(WavFile.SURNAME_TAG, etSurname.getText().toString());
+		draftWriter.insertMetadataTag(WavFile.TITLE_TAG, etTitle.getText().toString());
+		draftWriter.insertMetadataTag(WavFile.COMMENT_TAG, etComment.getText().toString());
 
 		LocalDateTime dateTime = LocalDateTime.now();
 		DateTimeFormatter formatterTime = DateTimeFormatter.ofPattern("HH:mm");
 		DateTimeFormatter formatterDate = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
-		wav.insertMetadataTag(WavFile.DATE_TAG, dateTime.format(formatterDate));
-		wav.insertMetadataTag(WavFile.TIME_TAG, dateTime.format(formatterTime));
-
-		clearMetadata();
+		draftWriter.insertMetadataTag(WavFile.DATE_TAG, dateTime.format(formatterDate));
+		draftWriter.insertMetadataTag(WavFile.TIME_TAG, dateTime.format(formatterTime));
 
 		String filename = "recording-" + System.currentTimeMillis() + ".wav";
-
-		writeFileOnInternalStorage(this, filename, wav.toByteArray());
-
-		recordingAudioDraft.clear();
-		updateRecorderState(RecorderState.IDLE);
-
-		Toast.makeText(this, "Recording saved!", Toast.LENGTH_SHORT).show();
+		File file = new File(AppUtils.getRecordingsDir(this), filename);
+		File draftFile = AppUtils.getDraftFile(this);
+
+		releaseCaptureEngine();
+
+		WavWriter writer = draftWriter;
+		draftWriter = null;
+		runInBackground(() -> {
+			try {
+				writer.close();
+				Files.move(draftFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+				return true;
+			} catch (IOException e) {
+				e.printStackTrace();
+				return false;
+			}
+		}, saved -> {
+			updateRecorderState(RecorderState.IDLE);
+			if (!saved) {
+				restoreDraft();
+				Toast.makeText(this, "Saving recording failed!", Toast.LENGTH_SHORT).show();
+				return;
+			}
+
+			clearMetadata();
+			Toast.makeText(this, "Recording saved!", Toast.LENGTH_SHORT).show();
+		});
 	}
 
 	public void onDeleteButton(View view) {
-		recordingAudioDraft.clear();
+		releaseCaptureEngine();
+		discardDraft();
 		clearMetadata();
 		Toast.makeText(this, "Recording draft deleted!", Toast.LENGTH_SHORT).show();
-		updateRecorderState(RecorderState.IDLE);
 	}
 
 	public void onListButton(View view) {
@@ -235,4 +437,38 @@ public class MainActivity extends AppCompatActivity implements IAudioProcessingT
 		etComment.setText(null);
 		etTitle.setText(null);
 	}
+
+	@Override
+	protected void onStop() {
+		super.onStop();
+
+		// the microphone is not held in the background; a running recording is paused first
+		if (currentState == RecorderState.RECORDING)
+			onStopButton(null);
+		releaseCaptureEngine();
+	}
+
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+
+		releaseCaptureEngine();
+
+		// leave the draft on disk; it is restored the next time the activity starts
+		WavWriter writer = draftWriter;
+		draftWriter = null;
+		captureExecutor.execute(() -> {
+			closeUnfinished(writer);
+			closeUnfinished(recoveredDraft.getAndSet(null));
+		});
+	}
+
+	private static void closeUnfinished(WavWriter writer) {
+		if (writer == null) return;
+		try {
+			writer.closeUnfinished();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,297 @@
+package com.example.audiorecorder.audio;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Streams 16-bit PCM blocks into an IMA-ADPCM WAV file (format 0x11), about a quarter of the
+ * size of the PCM. Being an {@link IAudioSink}, it can take the output of the processing
+ * stage directly; trimmed silence is not kept.
+ * <p>
+ * Input is cut into segments of {@link #SEGMENT_BLOCKS} ADPCM blocks that encode
+ * independently: the codec starts over at every segment, first adapting its step size over
+ * the last block of the previous one, so segment boundaries sound like any other block
+ * boundary. With a {@link ForkJoinPool} they
+ * are encoded in parallel and written in order as they complete; at most twice the pool's
+ * parallelism are in flight, the writer waits for the oldest before staging more. Without a
+ * pool they are encoded on the calling thread, to the same bytes.
+ */
+public class AdpcmWavWriter implements IAudioSink, Closeable {
+
+	private static final short WAVE_FORMAT_IMA_ADPCM = 0x11;
+	private static final int HEADER_LEN = 60;
+	private static final int READ_CHUNK_SIZE = 64 * 1024;
+	static final int SEGMENT_BLOCKS = 32;
+
+	private final FileChannel channel;
+	private final long sampleRate;
+	private final int channels;
+	private final int frameBytes;
+	private final int blockAlign;
+	private final int samplesPerBlock;
+
+	private final ForkJoinPool pool;
+	private final int maxInFlight;
+	private final ArrayDeque<ForkJoinTask<Segment>> inFlight = new ArrayDeque<>();
+	private final ArrayDeque<Segment> freeSegments = new ArrayDeque<>();
+	private Segment staging;
+
+	private long frameCount = 0;
+	private long dataLen = 0;
+
+	private final class Segment {
+		final ByteBuffer pcm = ByteBuffer.allocateDirect(SEGMENT_BLOCKS * samplesPerBlock *
+				frameBytes).order(ByteOrder.LITTLE_ENDIAN);
+		final ByteBuffer encoded = ByteBuffer.allocateDirect(SEGMENT_BLOCKS * blockAlign)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		// the last block of the previous segment, empty for the first one
+		final ByteBuffer warmUp = ByteBuffer.allocateDirect(samplesPerBlock * frameBytes)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		final ImaAdpcmCodec codec = new ImaAdpcmCodec(channels, blockAlign);
+
+		Segment encode() {
+			pcm.flip();
+			encoded.clear();
+			codec.reset();
+			warmUp.flip();
+			codec.adapt(warmUp, warmUp.remaining() / frameBytes);
+			while (pcm.hasRemaining())
+				codec.encodeBlock(pcm, encoded);
+			encoded.flip();
+			return this;
+		}
+	}
+
+	public AdpcmWavWriter(File file, long sampleRate, int channels) throws IOException {
+		this(file, sampleRate, channels, null);
+	}
+
+	/**
+	 * @param pool where segments are encoded, or {@code null} for the calling thread
+	 */
+	public AdpcmWavWriter(File file, long sampleRate, int channels, ForkJoinPool pool)
+			throws IOException {
+		this.sampleRate = sampleRate;
+		this.channels = channels;
+		this.frameBytes = channels * 2;
+		this.blockAlign = ImaAdpcmCodec.defaultBlockAlign(sampleRate, channels);
+		this.samplesPerBlock = ImaAdpcmCodec.samplesPerBlock(blockAlign, channels);
+		this.pool = pool;
+		this.maxInFlight = pool == null ? 0 : pool.getParallelism() * 2;
+
+		staging = new Segment();
+
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		writeFully(header());
+	}
+
+	/**
+	 * Encodes the audio of the 16-bit PCM WAV file {@code sourceFile} into {@code targetFile}
+	 * on the common pool.
+	 *
+	 * @see #encode(File, File, ForkJoinPool)
+	 */
+	public static boolean encode(File sourceFile, File targetFile) {
+		return encode(sourceFile, targetFile, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Encodes the audio of the 16-bit PCM WAV file {@code sourceFile} into {@code targetFile}
+	 * at its own sample rate.
+	 *
+	 * @see #encode(File, File, ForkJoinPool, int)
+	 */
+	public static boolean encode(File sourceFile, File targetFile, ForkJoinPool pool) {
+		return encode(sourceFile, targetFile, pool, 0);
+	}
+
+	/**
+	 * Encodes the audio of the 16-bit PCM WAV file {@code sourceFile} into {@code targetFile}.
+	 * The source is read in fixed-size chunks, which are converted to {@code sampleRate}
+	 * first if it differs from the source's.
+	 *
+	 * @param sampleRate the rate of the target, or 0 to keep the source's
+	 * @return whether the file was encoded; a partial target is deleted
+	 */
+	public static boolean encode(File sourceFile, File targetFile, ForkJoinPool pool,
+								 int sampleRate) {
+		WavFile wav = WavFile.probe(sourceFile);
+		if (wav == null || wav.getBitsPerSample() != 16) return false;
+		if (sampleRate == 0) sampleRate = (int) wav.getSampleRate();
+
+		try (FileChannel source = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ);
+			 AdpcmWavWriter writer = new AdpcmWavWriter(targetFile, sampleRate,
+					 wav.getChannels(), pool)) {
+			ByteBuffer chunk = ByteBuffer.allocateDirect(READ_CHUNK_SIZE)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			SampleRateConverter converter = null;
+			ByteBuffer converted = null;
+			if (sampleRate != wav.getSampleRate()) {
+				converter = new SampleRateConverter((int) wav.getSampleRate(), sampleRate,
+						wav.getChannels());
+				converted = ByteBuffer.allocateDirect(converter.getMaxOutputFrames(
+						READ_CHUNK_SIZE / (2 * wav.getChannels())) * 2 * wav.getChannels())
+						.order(ByteOrder.LITTLE_ENDIAN);
+			}
+			long position = wav.getAudioOffset();
+			long end = position + wav.getAudioLength();
+
+			while (position < end) {
+				chunk.clear();
+				if (end - position < chunk.capacity())
+					chunk.limit((int) (end - position));
+				int read = source.read(chunk, position);
+				if (read <= 0) break;
+				position += read;
+
+				chunk.flip();
+				if (converter == null) {
+					writer.appendAudioBytes(chunk);
+				} else {
+					converted.clear();
+					converter.process(chunk, converted);
+					converted.flip();
+					writer.appendAudioBytes(converted);
+					// a partial frame waits for the next chunk
+					position -= chunk.remaining();
+				}
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			e.printStackTrace();
+			targetFile.delete();
+			return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public void appendAudioBytes(ByteBuffer audioBlock) throws IOException {
+		int end = audioBlock.limit();
+		try {
+			while (audioBlock.position() < end) {
+				ByteBuffer pcm = staging.pcm;
+				audioBlock.limit(Math.min(end, audioBlock.position() + pcm.remaining()));
+				pcm.put(audioBlock);
+				if (!pcm.hasRemaining())
+					submitStaging();
+			}
+		} finally {
+			audioBlock.limit(end);
+		}
+	}
+
+	private void submitStaging() throws IOException {
+		Segment segment = staging;
+		frameCount += segment.pcm.position() / frameBytes;
+
+		// a short final block is padded by holding its last frame
+		ByteBuffer pcm = segment.pcm;
+		int blockBytes = samplesPerBlock * frameBytes;
+		int last = pcm.position() - frameBytes;
+		while (pcm.position() % blockBytes != 0)
+			pcm.putShort(pcm.getShort(last + pcm.position() % frameBytes));
+
+		if (pool == null) {
+			segment.encode();
+			carryLastBlock(segment.pcm, segment.pcm.limit(), segment);
+			write(segment);
+			staging = segment;
+			return;
+		}
+
+		// backpressure: the oldest segment has to be written before another one goes out
+		if (inFlight.size() >= maxInFlight)
+			writeOldest();
+		Segment next = freeSegments.isEmpty() ? new Segment() : freeSegments.poll();
+		carryLastBlock(pcm, pcm.position(), next);
+		inFlight.add(pool.submit(segment::encode));
+
+		staging = next;
+	}
+
+	private void carryLastBlock(ByteBuffer pcm, int end, Segment next) {
+		ByteBuffer lastBlock = pcm.duplicate();
+		lastBlock.limit(end).position(Math.max(0, end - next.warmUp.capacity()));
+		next.warmUp.clear();
+		next.warmUp.put(lastBlock);
+	}
+
+	private void writeOldest() throws IOException {
+		Segment segment = inFlight.poll().join();
+		write(segment);
+		freeSegments.add(segment);
+	}
+
+	private void write(Segment segment) throws IOException {
+		dataLen += writeFully(segment.encoded);
+		segment.pcm.clear();
+	}
+
+	public long getFrameCount() {
+		return frameCount + staging.pcm.position() / frameBytes;
+	}
+
+	private ByteBuffer header() {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LEN).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(new byte[]{'R', 'I', 'F', 'F'});
+		header.putInt((int) (HEADER_LEN - 8 + dataLen));
+		header.put(new byte[]{'W', 'A', 'V', 'E'});
+
+		header.put(new byte[]{'f', 'm', 't', ' '});
+		header.putInt(20);
+		header.putShort(WAVE_FORMAT_IMA_ADPCM);
+		header.putShort((short) channels);
+		header.putInt((int) sampleRate);
+		header.putInt((int) (sampleRate * blockAlign / samplesPerBlock));
+		header.putShort((short) blockAlign);
+		header.putShort((short) 4);
+		header.putShort((short) 2);
+		header.putShort((short) samplesPerBlock);
+
+		header.put(new byte[]{'f', 'a', 'c', 't'});
+		header.putInt(4);
+		header.putInt((int) frameCount);
+
+		header.put(new byte[]{'d', 'a', 't', 'a'});
+		header.putInt((int) dataLen);
+
+		header.flip();
+		return header;
+	}
+
+	private int writeFully(ByteBuffer buffer) throws IOException {
+		int written = 0;
+		while (buffer.hasRemaining())
+			written += channel.write(buffer);
+		return written;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			// input is a byte stream; a partial frame left at its end is dropped
+			ByteBuffer pcm = staging.pcm;
+			pcm.position(pcm.position() - pcm.position() % frameBytes);
+			if (pcm.position() > 0)
+				submitStaging();
+			while (!inFlight.isEmpty())
+				writeOldest();
+
+			ByteBuffer header = header();
+			while (header.hasRemaining())
+				channel.write(header, header.position());
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.example.audiorecorder.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed set of direct little-endian audio buffers cycled between a free list and a filled
+ * list, so capture does not allocate after start-up. When every buffer is in flight the
+ * newest block is dropped.
+ */
+public class AudioBufferPool {
+
+	public static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+	private final ArrayBlockingQueue<ByteBuffer> freeBuffers;
+	private final ArrayBlockingQueue<ByteBuffer> filledBuffers;
+	private final int bufferSize;
+	private final int lateThreshold;
+
+	private final AtomicLong droppedBlocks = new AtomicLong();
+	private final AtomicLong lateBlocks = new AtomicLong();
+
+	public AudioBufferPool(int capacity, int bufferSize) {
+		this.bufferSize = bufferSize;
+		freeBuffers = new ArrayBlockingQueue<>(capacity);
+		filledBuffers = new ArrayBlockingQueue<>(capacity + 1);
+		lateThreshold = Math.max(1, capacity / 2);
+
+		for (int i = 0; i < capacity; i++)
+			freeBuffers.add(ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN));
+	}
+
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = freeBuffers.poll();
+		if (buffer == null)
+			droppedBlocks.incrementAndGet();
+		return buffer;
+	}
+
+	public void publish(ByteBuffer buffer) {
+		if (filledBuffers.size() >= lateThreshold)
+			lateBlocks.incrementAndGet();
+		filledBuffers.add(buffer);
+	}
+
+	public void publishEndOfStream() {
+		filledBuffers.add(END_OF_STREAM);
+	}
+
+	public ByteBuffer take() throws InterruptedException {
+		return filledBuffers.take();
+	}
+
+	public void release(ByteBuffer buffer) {
+		buffer.clear();
+		freeBuffers.offer(buffer);
+
+		if (freeBuffers.remainingCapacity() == 0) {
+			synchronized (this) {
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Blocks until every buffer is back on the free list, i.e. every published block has
+	 * been fully consumed.
+	 */
+	public synchronized void awaitAllReleased() throws InterruptedException {
+		while (freeBuffers.remainingCapacity() > 0)
+			wait();
+	}
+
+	/**
+	 * Like {@link #awaitAllReleased()}, but gives up after {@code timeoutMillis}.
+	 *
+	 * @return whether every buffer is back
+	 */
+	public synchronized boolean awaitAllReleased(long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (freeBuffers.remainingCapacity() > 0) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) return false;
+			wait(remaining);
+		}
+		return true;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public long getDroppedBlocks() {
+		return droppedBlocks.get();
+	}
+
+	public long getLateBlocks() {
+		return lateBlocks.get();
+	}
+}
@@ -1,55 +1,75 @@
 package com.example.audiorecorder.audio;
 
-import android.media.AudioFormat;
-import android.media.AudioRecord;
-import android.media.MediaRecorder;
-
-import java.util.concurrent.LinkedBlockingQueue;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 
 public class AudioGrabbingTask implements Runnable {
 
+	// of the default capture profile
 	public static final int SAMPLE_RATE = 44100;
+	// sample frames per capture block, whatever the profile
 	public static final int BUFFER_SIZE = 4096;
+	public static final int BUFFER_COUNT = 32;
 
 	private volatile boolean running = true;
 
-	private final LinkedBlockingQueue<short[]> audioBuffersQueue;
-	private final AudioRecord audioRecord;
+	private final Object gateLock = new Object();
+	private boolean delivering = true;
+
+	private final IAudioSource audioSource;
+	private final AudioBufferPool bufferPool;
+	private final ByteBuffer overflowBuffer;
 
-	public AudioGrabbingTask(LinkedBlockingQueue<short[]> audioBuffersQueue) {
-		this.audioBuffersQueue = audioBuffersQueue;
+	public AudioGrabbingTask(IAudioSource audioSource, AudioBufferPool bufferPool) {
+		this.audioSource = audioSource;
+		this.bufferPool = bufferPool;
 
-		audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, SAMPLE_RATE,
-				AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT, BUFFER_SIZE);
+		overflowBuffer = ByteBuffer.allocateDirect(bufferPool.getBufferSize())
+				.order(ByteOrder.LITTLE_ENDIAN);
 	}
 
 	public void terminate() {
 		running = false;
 	}
 
-	private short[] getNextBlock() {
-		short[] buffer = new short[BUFFER_SIZE];
+	/**
+	 * Opens or closes the gate between the source and the pool. While closed the source keeps
+	 * capturing but every block is discarded. Once this returns with {@code false} no further
+	 * buffer is acquired, so the blocks still in flight are exactly those captured before.
+	 */
+	public void setDelivering(boolean delivering) {
+		synchronized (gateLock) {
+			this.delivering = delivering;
+		}
+	}
 
-		int returnCode = audioRecord.read(buffer, 0, buffer.length);
+	private void grabBlocks() {
+		ByteBuffer buffer;
+		audioSource.start();
+		while (running) {
+			synchronized (gateLock) {
+				buffer = delivering ? bufferPool.acquire() : null;
+			}
 
-		if (returnCode >= 0)
-			return buffer;
+			// paused, or every buffer is in flight: keep draining the source, drop the block
+			if (buffer == null) {
+				if (audioSource.read(overflowBuffer) == IAudioSource.END_OF_STREAM)
+					running = false;
+				continue;
+			}
 
-		return null;
-	}
+			int bytesRead = audioSource.read(buffer);
 
-	private void grabBlocks() throws InterruptedException {
-		short[] block;
-		audioRecord.startRecording();
-		while (running) {
-			synchronized (this) {
-				block = getNextBlock();
-				if (block != null)
-					audioBuffersQueue.put(block);
+			if (bytesRead > 0) {
+				bufferPool.publish(buffer);
+			} else {
+				bufferPool.release(buffer);
+				if (bytesRead == IAudioSource.END_OF_STREAM)
+					running = false;
 			}
 		}
-		audioRecord.stop();
+		audioSource.stop();
 	}
 
 
@@ -57,8 +77,8 @@ public class AudioGrabbingTask implements Runnable {
 	public void run() {
 		try {
 			grabBlocks();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+		} finally {
+			bufferPool.publishEndOfStream();
 		}
 	}
 }
@@ -0,0 +1,14 @@
+package com.example.audiorecorder.audio;
+
+public class AudioLevels {
+
+	private static final int H_MAX = 32767;
+
+	public static double peakLevel(int peakSample) {
+		return 20 * Math.log((double) peakSample / H_MAX);
+	}
+
+	public static int levelToProgress(double soundLevel) {
+		return (int) (1.25 * soundLevel + 100);
+	}
+}
@@ -1,71 +1,93 @@
 package com.example.audiorecorder.audio;
 
 
-import java.util.LinkedList;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class AudioProcessingTask implements Runnable {
 
-	private final LinkedBlockingQueue<short[]> audioBuffersQueue;
-	private final LinkedList<byte[]> output;
+	private final AudioBufferPool bufferPool;
+	private final VoiceActivityDetector voiceDetector;
+	private volatile IAudioSink output;
 
-	private volatile boolean running = true;
+	private final LevelMeter levelMeter = new LevelMeter();
 
-	private IAudioProcessingTaskListener taskListener = null;
+	private volatile boolean writeFailed = false;
 
-	public AudioProcessingTask(LinkedBlockingQueue<short[]> audioBuffersQueue,
-	                           LinkedList<byte[]> output) {
-		this.audioBuffersQueue = audioBuffersQueue;
+	public AudioProcessingTask(AudioBufferPool bufferPool, IAudioSink output,
+							   VoiceActivityDetector voiceDetector) {
+		this.bufferPool = bufferPool;
 		this.output = output;
+		this.voiceDetector = voiceDetector;
 	}
 
-	public void terminate() {
-		running = false;
+	public AudioProcessingTask(AudioBufferPool bufferPool, IAudioSink output) {
+		this(bufferPool, output, new VoiceActivityDetector(AudioGrabbingTask.SAMPLE_RATE));
 	}
 
-	private byte[] convertToByteArray(short[] block) {
-		byte[] bytes = new byte[block.length * 2];
-		int index = 0;
+	private void processBlocks() throws InterruptedException {
+		ByteBuffer block;
+		while ((block = bufferPool.take()) != AudioBufferPool.END_OF_STREAM) {
+			boolean voiced = writeVoiced(block);
+
+			// blocks trimmed as silence read as zero, like before the detector existed
+			if (voiced)
+				levelMeter.publish(voiceDetector.getBlockPeak(), voiceDetector.getBlockRms());
+			else
+				levelMeter.publish(0, 0);
 
-		for (short val : block) {
-			bytes[index++] = (byte) (val & 0xff);
-			bytes[index++] = (byte) ((val >> 8) & 0xff);
+			bufferPool.release(block);
 		}
 
-		return bytes;
+		finishVoiced();
 	}
 
-	private void processBlocks() throws InterruptedException {
-		short[] block;
-		while (running) {
-			synchronized (this) {
-				if (audioBuffersQueue.isEmpty()) continue;
-
-				block = audioBuffersQueue.take();
+	// after a failed write the stage keeps draining so capture does not back up
+	private boolean writeVoiced(ByteBuffer block) {
+		IAudioSink output = writeFailed ? null : this.output;
 
-				if (!blockIsSilent(block))
-					output.add(convertToByteArray(block));
-				else block = new short[1];
-
-				if (taskListener != null)
-					taskListener.onBytesProcessed(block);
-			}
+		try {
+			return voiceDetector.process(block, output);
+		} catch (IOException e) {
+			e.printStackTrace();
+			writeFailed = true;
+			return true;
 		}
 	}
 
+	// trailing silence still waiting in the pre-roll is part of the timeline too
+	private void finishVoiced() {
+		if (writeFailed) return;
 
-	private boolean blockIsSilent(short[] block) {
-		final int SILENCE_THRESHOLD = 200;
-		int maxValue = Short.MIN_VALUE;
+		try {
+			voiceDetector.finish(output);
+		} catch (IOException e) {
+			e.printStackTrace();
+			writeFailed = true;
+		}
+	}
 
-		for (short val : block)
-			maxValue = Math.max(maxValue, Math.abs(val));
+	/**
+	 * Redirects the following blocks to another sink. Only safe while no blocks are in flight,
+	 * see {@link AudioBufferPool#awaitAllReleased()}. Setting the same sink again, when
+	 * resuming, keeps the voice detector's state.
+	 */
+	public void setOutput(IAudioSink output) {
+		if (output != this.output)
+			voiceDetector.reset();
+		this.output = output;
+		writeFailed = false;
+	}
 
-		return maxValue < SILENCE_THRESHOLD;
+	public boolean hasWriteFailed() {
+		return writeFailed;
 	}
 
-	public void setTaskListener(IAudioProcessingTaskListener taskListener) {
-		this.taskListener = taskListener;
+	/**
+	 * @return the level of the latest block, safe to poll from any thread
+	 */
+	public LevelMeter getLevelMeter() {
+		return levelMeter;
 	}
 
 
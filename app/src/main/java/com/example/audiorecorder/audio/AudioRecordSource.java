@@ -0,0 +1,130 @@
+package com.example.audiorecorder.audio;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+
+import java.nio.ByteBuffer;
+
+public class AudioRecordSource implements IAudioSource {
+
+	public enum CaptureMode {
+		SHORT_ARRAY,
+		DIRECT_BUFFER
+	}
+
+	private final AudioRecord audioRecord;
+	private final CaptureMode captureMode;
+	private final CaptureProfile profile;
+	private short[] shortBuffer;
+
+	public AudioRecordSource(CaptureMode captureMode) {
+		this(CaptureProfile.STANDARD, captureMode);
+	}
+
+	/**
+	 * Short arrays only carry 16-bit samples, other formats are always read into the direct
+	 * buffer.
+	 *
+	 * @throws IllegalArgumentException if the device cannot record in {@code profile}
+	 */
+	public AudioRecordSource(CaptureProfile profile, CaptureMode captureMode) {
+		this.profile = profile;
+		this.captureMode = profile.getSampleFormat() == SampleFormat.PCM_16 ?
+				captureMode : CaptureMode.DIRECT_BUFFER;
+
+		if (profile.getChannels() > 2)
+			throw new IllegalArgumentException("Unsupported channel count: " +
+					profile.getChannels());
+		int channelMask = profile.getChannels() == 2 ? AudioFormat.CHANNEL_IN_STEREO :
+				AudioFormat.CHANNEL_IN_MONO;
+		int encoding = encodingOf(profile.getSampleFormat());
+
+		// as many frames as the original 16-bit mono buffer held, unless the device needs more
+		int bufferSize = Math.max(AudioGrabbingTask.BUFFER_SIZE / 2 * profile.getFrameSize(),
+				AudioRecord.getMinBufferSize(profile.getSampleRate(), channelMask, encoding));
+
+		audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, profile.getSampleRate(),
+				channelMask, encoding, bufferSize);
+		if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+			audioRecord.release();
+			throw new IllegalArgumentException("Unsupported capture profile");
+		}
+	}
+
+	// packed 24-bit capture needs API 31, beyond the SDK this app is built against
+	private static int encodingOf(SampleFormat sampleFormat) {
+		switch (sampleFormat) {
+			case PCM_8:
+				return AudioFormat.ENCODING_PCM_8BIT;
+			case PCM_16:
+				return AudioFormat.ENCODING_PCM_16BIT;
+			case FLOAT_32:
+				return AudioFormat.ENCODING_PCM_FLOAT;
+			default:
+				throw new IllegalArgumentException("Unsupported sample format: " + sampleFormat);
+		}
+	}
+
+	@Override
+	public int getSampleRate() {
+		return profile.getSampleRate();
+	}
+
+	@Override
+	public int getChannels() {
+		return profile.getChannels();
+	}
+
+	@Override
+	public SampleFormat getSampleFormat() {
+		return profile.getSampleFormat();
+	}
+
+	@Override
+	public void start() {
+		audioRecord.startRecording();
+	}
+
+	@Override
+	public int read(ByteBuffer buffer) {
+		buffer.clear();
+
+		if (captureMode == CaptureMode.DIRECT_BUFFER)
+			return readDirect(buffer);
+		return readShorts(buffer);
+	}
+
+	// AudioRecord writes native-endian samples from index 0 of a direct buffer
+	private int readDirect(ByteBuffer buffer) {
+		int frameSize = profile.getFrameSize();
+		int bytesRead = audioRecord.read(buffer, buffer.capacity() - buffer.capacity() % frameSize);
+
+		if (bytesRead >= 0)
+			buffer.limit(bytesRead);
+		return bytesRead;
+	}
+
+	private int readShorts(ByteBuffer buffer) {
+		if (shortBuffer == null || shortBuffer.length != buffer.capacity() / 2)
+			shortBuffer = new short[buffer.capacity() / 2];
+
+		int samplesRead = audioRecord.read(shortBuffer, 0, shortBuffer.length);
+		if (samplesRead < 0)
+			return samplesRead;
+
+		buffer.asShortBuffer().put(shortBuffer, 0, samplesRead);
+		buffer.limit(samplesRead * 2);
+		return samplesRead * 2;
+	}
+
+	@Override
+	public void stop() {
+		audioRecord.stop();
+	}
+
+	@Override
+	public void release() {
+		audioRecord.release();
+	}
+}
@@ -0,0 +1,101 @@
+package com.example.audiorecorder.audio;
+
+/**
+ * Keeps the audio source and both pipeline threads alive for a whole recording session.
+ * Pausing only closes the gate in front of the pool, so resuming delivers audio after a single
+ * buffer period instead of re-initialising the recorder.
+ */
+public class CaptureEngine {
+
+	// how often a pause waiting for the pipeline checks that the processing thread is alive
+	private static final long LIVENESS_CHECK_MILLIS = 100;
+
+	private final IAudioSource audioSource;
+	private final AudioBufferPool bufferPool;
+	private final AudioGrabbingTask provider;
+	private final AudioProcessingTask processor;
+	private final Thread providerThread, processorThread;
+
+	private boolean started = false;
+	private boolean released = false;
+
+	public CaptureEngine(IAudioSource audioSource, int bufferCount, int bufferSize) {
+		this.audioSource = audioSource;
+		bufferPool = new AudioBufferPool(bufferCount, bufferSize);
+
+		provider = new AudioGrabbingTask(audioSource, bufferPool);
+		provider.setDelivering(false);
+		processor = new AudioProcessingTask(bufferPool, null,
+				new VoiceActivityDetector(audioSource.getSampleRate(), audioSource.getChannels(),
+						audioSource.getSampleFormat()));
+
+		providerThread = new Thread(provider, "audio-capture");
+		processorThread = new Thread(processor, "audio-processing");
+	}
+
+	public LevelMeter getLevelMeter() {
+		return processor.getLevelMeter();
+	}
+
+	/**
+	 * Starts delivering captured blocks to {@code output}; the first call also starts the
+	 * source and the pipeline threads.
+	 */
+	public synchronized void resume(IAudioSink output) {
+		if (released)
+			throw new IllegalStateException("Capture engine already released");
+
+		processor.setOutput(output);
+
+		if (!started) {
+			processorThread.start();
+			providerThread.start();
+			started = true;
+		}
+
+		provider.setDelivering(true);
+	}
+
+	/**
+	 * Stops delivering and blocks until every block captured so far has reached the sink, so
+	 * the sink may be flushed or closed afterwards. The source keeps running. Waiting may
+	 * take as long as writing a full pool of blocks, so this is no call for the main thread.
+	 *
+	 * @return whether every block was processed; {@code false} if the processing thread died
+	 * with blocks still queued
+	 */
+	public synchronized boolean pause() throws InterruptedException {
+		provider.setDelivering(false);
+		if (!started) return true;
+
+		while (!bufferPool.awaitAllReleased(LIVENESS_CHECK_MILLIS)) {
+			if (!processorThread.isAlive()) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Stops the threads and releases the source. Blocks already delivered are still written;
+	 * like {@link #pause()}, this blocks until they are.
+	 */
+	public synchronized void release() throws InterruptedException {
+		if (released) return;
+		released = true;
+
+		if (started) {
+			provider.terminate();
+			providerThread.join();
+			processorThread.join();
+		}
+
+		audioSource.release();
+	}
+
+	public long getDroppedBlocks() {
+		return bufferPool.getDroppedBlocks();
+	}
+
+	public boolean hasWriteFailed() {
+		return processor.hasWriteFailed();
+	}
+}
@@ -0,0 +1,71 @@
+package com.example.audiorecorder.audio;
+
+/**
+ * Sample rate, channel count and sample format of a recording, chosen before capture starts
+ * and kept for the whole draft.
+ */
+public final class CaptureProfile {
+
+	public static final CaptureProfile STANDARD =
+			new CaptureProfile(AudioGrabbingTask.SAMPLE_RATE, 1, SampleFormat.PCM_16);
+	public static final CaptureProfile SPEECH = new CaptureProfile(16000, 1, SampleFormat.PCM_16);
+	public static final CaptureProfile STEREO = new CaptureProfile(48000, 2, SampleFormat.PCM_16);
+	public static final CaptureProfile MUSIC = new CaptureProfile(48000, 2, SampleFormat.FLOAT_32);
+
+	/**
+	 * The profiles offered for new recordings, in the order of the {@code capture_profiles}
+	 * string array.
+	 */
+	public static final CaptureProfile[] PRESETS = {STANDARD, SPEECH, STEREO, MUSIC};
+
+	private final int sampleRate;
+	private final int channels;
+	private final SampleFormat sampleFormat;
+
+	public CaptureProfile(int sampleRate, int channels, SampleFormat sampleFormat) {
+		if (sampleRate < 1 || channels < 1)
+			throw new IllegalArgumentException("Invalid capture profile");
+
+		this.sampleRate = sampleRate;
+		this.channels = channels;
+		this.sampleFormat = sampleFormat;
+	}
+
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	public SampleFormat getSampleFormat() {
+		return sampleFormat;
+	}
+
+	/**
+	 * @return the size of one sample frame, all channels, in bytes
+	 */
+	public int getFrameSize() {
+		return channels * sampleFormat.getBytesPerSample();
+	}
+
+	public long getBytesPerSecond() {
+		return (long) sampleRate * getFrameSize();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof CaptureProfile)) return false;
+
+		CaptureProfile other = (CaptureProfile) o;
+		return sampleRate == other.sampleRate && channels == other.channels &&
+				sampleFormat == other.sampleFormat;
+	}
+
+	@Override
+	public int hashCode() {
+		return (sampleRate * 31 + channels) * 31 + sampleFormat.hashCode();
+	}
+}
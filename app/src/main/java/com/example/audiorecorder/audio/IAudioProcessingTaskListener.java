@@ -1,6 +0,0 @@
-package com.example.audiorecorder.audio;
-
-public interface IAudioProcessingTaskListener {
-
-	void onBytesProcessed(short[] block);
-}
@@ -0,0 +1,16 @@
+package com.example.audiorecorder.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public interface IAudioSink {
+
+	void appendAudioBytes(ByteBuffer audioBlock) throws IOException;
+
+	/**
+	 * Notes that {@code byteCount} bytes of silence were trimmed at the current position.
+	 * Sinks that do not keep the original timeline ignore it.
+	 */
+	default void skipAudioBytes(long byteCount) throws IOException {
+	}
+}
@@ -0,0 +1,28 @@
+package com.example.audiorecorder.audio;
+
+import java.nio.ByteBuffer;
+
+public interface IAudioSource {
+
+	int END_OF_STREAM = Integer.MIN_VALUE;
+
+	int getSampleRate();
+
+	int getChannels();
+
+	SampleFormat getSampleFormat();
+
+	void start();
+
+	/**
+	 * Fills {@code buffer} with whole frames of interleaved little-endian samples in
+	 * {@link #getSampleFormat()} from index 0 and sets its limit to the number of bytes
+	 * read. Returns that number, a negative error code, or {@link #END_OF_STREAM} once a
+	 * finite source is exhausted.
+	 */
+	int read(ByteBuffer buffer);
+
+	void stop();
+
+	void release();
+}
@@ -0,0 +1,208 @@
+package com.example.audiorecorder.audio;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * IMA/DVI 4-bit ADPCM in the block layout of WAVE format 0x11: each block starts with a
+ * 4-byte header per channel (first sample, step index) followed by groups of 4 bytes per
+ * channel, every group holding 8 samples, low nibble first. Nothing is allocated per block.
+ */
+public class ImaAdpcmCodec {
+
+	private static final int[] STEP_TABLE = {
+			7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45, 50, 55,
+			60, 66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230, 253, 279, 307,
+			337, 371, 408, 449, 494, 544, 598, 658, 724, 796, 876, 963, 1060, 1166, 1282, 1411,
+			1552, 1707, 1878, 2066, 2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358,
+			5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487, 12635, 13899, 15289, 16818, 18500,
+			20350, 22385, 24623, 27086, 29794, 32767};
+
+	private static final int[] INDEX_TABLE = {-1, -1, -1, -1, 2, 4, 6, 8};
+
+	static final int HEADER_BYTES_PER_CHANNEL = 4;
+	private static final int GROUP_BYTES = 4;
+	private static final int GROUP_SAMPLES = 8;
+
+	private final int channels;
+	private final int blockAlign;
+	private final int samplesPerBlock;
+
+	// the step index carries over from block to block, the predictor restarts at each header
+	private final int[] stepIndex;
+
+	public ImaAdpcmCodec(int channels, int blockAlign) {
+		if (channels <= 0 || blockAlign <= HEADER_BYTES_PER_CHANNEL * channels ||
+				(blockAlign - HEADER_BYTES_PER_CHANNEL * channels) % (GROUP_BYTES * channels) != 0)
+			throw new IllegalArgumentException("Invalid ADPCM block layout");
+
+		this.channels = channels;
+		this.blockAlign = blockAlign;
+		this.samplesPerBlock = samplesPerBlock(blockAlign, channels);
+		this.stepIndex = new int[channels];
+	}
+
+	/**
+	 * The customary block size: 256 bytes per channel at 11025 Hz, growing with the rate.
+	 */
+	public static int defaultBlockAlign(long sampleRate, int channels) {
+		return 256 * channels * (int) Math.max(1, sampleRate / 11025);
+	}
+
+	public static int samplesPerBlock(int blockAlign, int channels) {
+		return (blockAlign - HEADER_BYTES_PER_CHANNEL * channels) * 2 / channels + 1;
+	}
+
+	/**
+	 * Starts the step adaptation over, so the next block does not depend on earlier ones.
+	 */
+	public void reset() {
+		Arrays.fill(stepIndex, 0);
+	}
+
+	/**
+	 * Runs the step adaptation over {@code frames} frames of 16-bit little-endian interleaved
+	 * PCM at {@code pcm}'s position as {@link #encodeBlock} would, without any output. Warming
+	 * up over the block before a restart lands on about the step index an encoder that never
+	 * restarted would have reached. The position is advanced.
+	 */
+	public void adapt(ByteBuffer pcm, int frames) {
+		int pcmStart = pcm.position();
+		int frameBytes = channels * 2;
+
+		for (int c = 0; c < channels && frames > 0; c++) {
+			int predictor = pcm.getShort(pcmStart + c * 2);
+			int index = stepIndex[c];
+			for (int f = 1; f < frames; f++) {
+				int step = STEP_TABLE[index];
+				int nibble = quantize(pcm.getShort(pcmStart + f * frameBytes + c * 2) - predictor,
+						step);
+				predictor = reconstruct(predictor, nibble, step);
+				index = clamp(index + INDEX_TABLE[nibble & 7], 0, STEP_TABLE.length - 1);
+			}
+			stepIndex[c] = index;
+		}
+
+		pcm.position(pcmStart + frames * frameBytes);
+	}
+
+	public int getBlockAlign() {
+		return blockAlign;
+	}
+
+	public int getSamplesPerBlock() {
+		return samplesPerBlock;
+	}
+
+	/**
+	 * Encodes one block of {@link #getSamplesPerBlock()} frames of 16-bit little-endian
+	 * interleaved PCM, read from {@code pcm}'s position, into {@link #getBlockAlign()} bytes
+	 * at {@code out}'s position. Both positions are advanced.
+	 */
+	public void encodeBlock(ByteBuffer pcm, ByteBuffer out) {
+		int pcmStart = pcm.position();
+		int frameBytes = channels * 2;
+
+		for (int c = 0; c < channels; c++) {
+			short first = pcm.getShort(pcmStart + c * 2);
+			out.putShort(first);
+			out.put((byte) stepIndex[c]);
+			out.put((byte) 0);
+		}
+
+		for (int c = 0; c < channels; c++) {
+			int predictor = pcm.getShort(pcmStart + c * 2);
+			int index = stepIndex[c];
+			int groupOffset = out.position() + c * GROUP_BYTES;
+
+			for (int s = 1; s < samplesPerBlock; s += GROUP_SAMPLES) {
+				for (int b = 0; b < GROUP_BYTES; b++) {
+					int packed = 0;
+					for (int half = 0; half < 2; half++) {
+						int sample = pcm.getShort(pcmStart + (s + b * 2 + half) * frameBytes + c * 2);
+
+						int step = STEP_TABLE[index];
+						int nibble = quantize(sample - predictor, step);
+						predictor = reconstruct(predictor, nibble, step);
+						index = clamp(index + INDEX_TABLE[nibble & 7], 0, STEP_TABLE.length - 1);
+						packed |= nibble << (half * 4);
+					}
+					out.put(groupOffset + b, (byte) packed);
+				}
+				groupOffset += GROUP_BYTES * channels;
+			}
+			stepIndex[c] = index;
+		}
+
+		out.position(out.position() + blockAlign - HEADER_BYTES_PER_CHANNEL * channels);
+		pcm.position(pcmStart + samplesPerBlock * frameBytes);
+	}
+
+	/**
+	 * Decodes one block at {@code block}'s position into {@code out} as interleaved samples;
+	 * blocks are self-contained, so no state is kept between calls.
+	 */
+	public static void decodeBlock(ByteBuffer block, int channels, int samplesPerBlock,
+								   short[] out) {
+		int start = block.position();
+		int dataStart = start + HEADER_BYTES_PER_CHANNEL * channels;
+
+		for (int c = 0; c < channels; c++) {
+			int predictor = block.getShort(start + c * HEADER_BYTES_PER_CHANNEL);
+			int index = clamp(block.get(start + c * HEADER_BYTES_PER_CHANNEL + 2), 0,
+					STEP_TABLE.length - 1);
+			out[c] = (short) predictor;
+
+			int groupOffset = dataStart + c * GROUP_BYTES;
+			for (int s = 1; s < samplesPerBlock; s += GROUP_SAMPLES) {
+				for (int b = 0; b < GROUP_BYTES; b++) {
+					int packed = block.get(groupOffset + b);
+					for (int half = 0; half < 2; half++) {
+						int nibble = (packed >> (half * 4)) & 0xf;
+						predictor = reconstruct(predictor, nibble, STEP_TABLE[index]);
+						index = clamp(index + INDEX_TABLE[nibble & 7], 0, STEP_TABLE.length - 1);
+						out[(s + b * 2 + half) * channels + c] = (short) predictor;
+					}
+				}
+				groupOffset += GROUP_BYTES * channels;
+			}
+		}
+
+		block.position(start + HEADER_BYTES_PER_CHANNEL * channels +
+				(samplesPerBlock - 1) / 2 * channels);
+	}
+
+	// the 4-bit code of the difference to the predictor, sign in the top bit
+	private static int quantize(int diff, int step) {
+		int nibble = 0;
+		if (diff < 0) {
+			nibble = 8;
+			diff = -diff;
+		}
+		if (diff >= step) {
+			nibble |= 4;
+			diff -= step;
+		}
+		if (diff >= step >> 1) {
+			nibble |= 2;
+			diff -= step >> 1;
+		}
+		if (diff >= step >> 2)
+			nibble |= 1;
+		return nibble;
+	}
+
+	// the next predictor, as both encoder and decoder compute it from a code
+	private static int reconstruct(int predictor, int nibble, int step) {
+		int delta = step >> 3;
+		if ((nibble & 4) != 0) delta += step;
+		if ((nibble & 2) != 0) delta += step >> 1;
+		if ((nibble & 1) != 0) delta += step >> 2;
+		return clamp(predictor + ((nibble & 8) != 0 ? -delta : delta),
+				Short.MIN_VALUE, Short.MAX_VALUE);
+	}
+
+	private static int clamp(int value, int min, int max) {
+		return Math.max(min, Math.min(max, value));
+	}
+}
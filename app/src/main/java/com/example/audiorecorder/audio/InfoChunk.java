@@ -0,0 +1,129 @@
+package com.example.audiorecorder.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The RIFF "LIST" chunk of type "INFO" that carries a recording's metadata after the audio.
+ * Every tag is a sub-chunk: a 4-character id, a little-endian uint32 size and the
+ * NUL-terminated UTF-8 value, padded to an even length. Title, comment and date use the
+ * standard INFO ids, so other players show them; the remaining tags keep their own ids.
+ */
+class InfoChunk {
+
+	static final byte[] CHUNK_ID = "LIST".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] LIST_TYPE = "INFO".getBytes(StandardCharsets.US_ASCII);
+	private static final int CHUNK_HEADER_LEN = 8;
+	private static final int ID_LEN = 4;
+
+	private static final String[][] STANDARD_IDS = {
+			{WavFile.TITLE_TAG, "INAM"},
+			{WavFile.COMMENT_TAG, "ICMT"},
+			{WavFile.DATE_TAG, "ICRD"}};
+
+	private static String toInfoId(String tag) {
+		for (String[] ids : STANDARD_IDS)
+			if (ids[0].equals(tag)) return ids[1];
+		return tag;
+	}
+
+	private static String toTag(String infoId) {
+		for (String[] ids : STANDARD_IDS)
+			if (ids[1].equals(infoId)) return ids[0];
+		return infoId;
+	}
+
+	/**
+	 * Builds the chunk from the set values of {@code metadata}, the known tags first. Tags that
+	 * are not four ASCII characters cannot be stored and are left out.
+	 */
+	static byte[] toChunk(Map<String, String> metadata) {
+		List<String> tags = new ArrayList<>();
+		for (String tag : WavFile.METADATA_TAGS)
+			if (metadata.get(tag) != null) tags.add(tag);
+		for (String tag : new TreeMap<>(metadata).keySet())
+			if (metadata.get(tag) != null && !tags.contains(tag)) tags.add(tag);
+
+		List<byte[]> values = new ArrayList<>();
+		int payloadLen = LIST_TYPE.length;
+		for (int i = 0; i < tags.size(); i++) {
+			String tag = tags.get(i);
+			if (tag.length() != ID_LEN || !StandardCharsets.US_ASCII.newEncoder().canEncode(tag)) {
+				tags.remove(i--);
+				continue;
+			}
+			byte[] value = (metadata.get(tag) + '\0').getBytes(StandardCharsets.UTF_8);
+			values.add(value);
+			payloadLen += CHUNK_HEADER_LEN + value.length + (value.length & 1);
+		}
+
+		ByteBuffer chunk = ByteBuffer.allocate(CHUNK_HEADER_LEN + payloadLen)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		chunk.put(CHUNK_ID);
+		chunk.putInt(payloadLen);
+		chunk.put(LIST_TYPE);
+		for (int i = 0; i < tags.size(); i++) {
+			byte[] value = values.get(i);
+			chunk.put(toInfoId(tags.get(i)).getBytes(StandardCharsets.US_ASCII));
+			chunk.putInt(value.length);
+			chunk.put(value);
+			if ((value.length & 1) != 0)
+				chunk.put((byte) 0);
+		}
+		return chunk.array();
+	}
+
+	/**
+	 * @return whether a LIST chunk of type INFO starts at {@code offset}
+	 */
+	static boolean startsWithChunk(byte[] bytes, int offset) {
+		return bytes.length - offset >= CHUNK_HEADER_LEN + LIST_TYPE.length &&
+				matches(bytes, offset, CHUNK_ID) &&
+				matches(bytes, offset + CHUNK_HEADER_LEN, LIST_TYPE);
+	}
+
+	static boolean isChunk(RiffChunkIterator chunks) throws IOException {
+		return chunks.isChunk(CHUNK_ID) && matches(chunks.readData(LIST_TYPE.length), 0, LIST_TYPE);
+	}
+
+	/**
+	 * Parses the sub-chunks of the LIST/INFO chunk at {@code offset}; a sub-chunk running past
+	 * the chunk ends the parse.
+	 */
+	static HashMap<String, String> fromChunk(byte[] bytes, int offset) {
+		HashMap<String, String> metadata = new HashMap<>();
+		if (!startsWithChunk(bytes, offset)) return metadata;
+
+		ByteBuffer chunk = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		long size = chunk.getInt(offset + ID_LEN) & 0xffffffffL;
+		long end = Math.min(bytes.length, offset + CHUNK_HEADER_LEN + size);
+
+		int position = offset + CHUNK_HEADER_LEN + LIST_TYPE.length;
+		while (position + CHUNK_HEADER_LEN <= end) {
+			String id = new String(bytes, position, ID_LEN, StandardCharsets.US_ASCII);
+			long valueLen = chunk.getInt(position + ID_LEN) & 0xffffffffL;
+			int valueStart = position + CHUNK_HEADER_LEN;
+			if (valueLen > end - valueStart) break;
+
+			int valueEnd = valueStart + (int) valueLen;
+			while (valueEnd > valueStart && bytes[valueEnd - 1] == 0)
+				valueEnd--;
+			metadata.put(toTag(id), new String(bytes, valueStart, valueEnd - valueStart,
+					StandardCharsets.UTF_8));
+
+			position = valueStart + (int) valueLen + (int) (valueLen & 1);
+		}
+		return metadata;
+	}
+
+	private static boolean matches(byte[] bytes, int offset, byte[] id) {
+		return RiffChunkIterator.matches(bytes, offset, id);
+	}
+}
@@ -0,0 +1,34 @@
+package com.example.audiorecorder.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands the level of the latest processed block from the processing thread to the UI without
+ * locking. Peak and RMS are packed into a single long, so a reader never mixes two blocks.
+ */
+public class LevelMeter {
+
+	private final AtomicLong level = new AtomicLong();
+
+	void publish(int peak, double rms) {
+		level.lazySet(((long) peak << 32) | Float.floatToRawIntBits((float) rms) & 0xffffffffL);
+	}
+
+	public long get() {
+		return level.get();
+	}
+
+	/**
+	 * @return the largest absolute sample of a value returned by {@link #get()}
+	 */
+	public static int peakOf(long level) {
+		return (int) (level >>> 32);
+	}
+
+	/**
+	 * @return the RMS amplitude, in sample units, of a value returned by {@link #get()}
+	 */
+	public static double rmsOf(long level) {
+		return Float.intBitsToFloat((int) level);
+	}
+}
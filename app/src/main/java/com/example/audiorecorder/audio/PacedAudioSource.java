@@ -0,0 +1,75 @@
+package com.example.audiorecorder.audio;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Throttles another source to its nominal sample rate, for latency measurements with
+ * sources that would otherwise run faster than real time.
+ */
+public class PacedAudioSource implements IAudioSource {
+
+	private final IAudioSource source;
+
+	private long startNanos;
+	private long bytesDelivered;
+
+	public PacedAudioSource(IAudioSource source) {
+		this.source = source;
+	}
+
+	@Override
+	public int getSampleRate() {
+		return source.getSampleRate();
+	}
+
+	@Override
+	public int getChannels() {
+		return source.getChannels();
+	}
+
+	@Override
+	public SampleFormat getSampleFormat() {
+		return source.getSampleFormat();
+	}
+
+	@Override
+	public void start() {
+		source.start();
+		startNanos = System.nanoTime();
+		bytesDelivered = 0;
+	}
+
+	@Override
+	public int read(ByteBuffer buffer) {
+		int bytesRead = source.read(buffer);
+		if (bytesRead <= 0)
+			return bytesRead;
+
+		bytesDelivered += bytesRead;
+		long bytesPerSecond = (long) getSampleRate() * getChannels() *
+				getSampleFormat().getBytesPerSample();
+		long dueNanos = startNanos + bytesDelivered * 1_000_000_000L / bytesPerSecond;
+
+		long waitNanos;
+		while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+			try {
+				Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		return bytesRead;
+	}
+
+	@Override
+	public void stop() {
+		source.stop();
+	}
+
+	@Override
+	public void release() {
+		source.release();
+	}
+}
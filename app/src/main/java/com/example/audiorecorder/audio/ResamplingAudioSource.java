@@ -0,0 +1,75 @@
+package com.example.audiorecorder.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Converts another 16-bit source to a different sample rate on the capture thread, so the
+ * rest of the pipeline sees the rate it asked for, e.g. 16 kHz speech from a device that
+ * only records at 44.1 kHz.
+ */
+public class ResamplingAudioSource implements IAudioSource {
+
+	private final IAudioSource source;
+	private final SampleRateConverter converter;
+
+	private ByteBuffer input;
+
+	public ResamplingAudioSource(IAudioSource source, int sampleRate) {
+		if (source.getSampleFormat() != SampleFormat.PCM_16)
+			throw new IllegalArgumentException("Only 16-bit sources can be resampled");
+
+		this.source = source;
+		this.converter = new SampleRateConverter(source.getSampleRate(), sampleRate,
+				source.getChannels());
+	}
+
+	@Override
+	public int getSampleRate() {
+		return converter.getOutputRate();
+	}
+
+	@Override
+	public int getChannels() {
+		return source.getChannels();
+	}
+
+	@Override
+	public SampleFormat getSampleFormat() {
+		return SampleFormat.PCM_16;
+	}
+
+	@Override
+	public void start() {
+		converter.reset();
+		source.start();
+	}
+
+	@Override
+	public int read(ByteBuffer buffer) {
+		// read no more than the output buffer can take once converted
+		int frameSize = 2 * getChannels();
+		int inputSize = converter.getMaxInputFrames(buffer.capacity() / frameSize) * frameSize;
+		if (input == null || input.capacity() != inputSize)
+			input = ByteBuffer.allocateDirect(inputSize).order(ByteOrder.LITTLE_ENDIAN);
+
+		int bytesRead = source.read(input);
+		if (bytesRead <= 0)
+			return bytesRead;
+
+		buffer.clear();
+		converter.process(input, buffer);
+		buffer.flip();
+		return buffer.limit();
+	}
+
+	@Override
+	public void stop() {
+		source.stop();
+	}
+
+	@Override
+	public void release() {
+		source.release();
+	}
+}
@@ -0,0 +1,166 @@
+package com.example.audiorecorder.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Walks the chunks of a RIFF file one header at a time. Only the 8-byte chunk headers are
+ * read; bodies are skipped by their declared size, rounded up to a whole word as RIFF
+ * requires, unless asked for. The walk ends at the end of the file, not at the RIFF size,
+ * which streaming writers often leave wrong; a chunk running past the end of the file is the
+ * last one and is reported as truncated.
+ */
+public class RiffChunkIterator {
+
+	public static final int CHUNK_HEADER_LEN = 8;
+	private static final int RIFF_HEADER_LEN = 12;
+	private static final byte[] RIFF_ID = "RIFF".getBytes(StandardCharsets.US_ASCII);
+
+	private final SeekableByteChannel channel;
+	private final long fileSize;
+	private final byte[] formType = new byte[4];
+	private final ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_LEN)
+			.order(ByteOrder.LITTLE_ENDIAN);
+
+	private long formSize;
+	private long nextOffset = RIFF_HEADER_LEN;
+	private long offset = -1;
+	private long size;
+
+	private RiffChunkIterator(SeekableByteChannel channel, long fileSize) {
+		this.channel = channel;
+		this.fileSize = fileSize;
+	}
+
+	/**
+	 * @return an iterator positioned before the first chunk, or {@code null} when the channel
+	 * does not start with a RIFF header
+	 */
+	public static RiffChunkIterator open(SeekableByteChannel channel) throws IOException {
+		RiffChunkIterator chunks = new RiffChunkIterator(channel, channel.size());
+
+		ByteBuffer riffHeader = ByteBuffer.allocate(RIFF_HEADER_LEN);
+		channel.position(0);
+		if (WavFile.readFully(channel, riffHeader) < RIFF_HEADER_LEN) return null;
+		if (!matches(riffHeader.array(), 0, RIFF_ID)) return null;
+
+		System.arraycopy(riffHeader.array(), 8, chunks.formType, 0, chunks.formType.length);
+		chunks.formSize = riffHeader.order(ByteOrder.LITTLE_ENDIAN).getInt(4) & 0xffffffffL;
+		return chunks;
+	}
+
+	/**
+	 * @return where the form ends according to the RIFF header, which may be past the end of
+	 * the file
+	 */
+	public long getFormEndOffset() {
+		return CHUNK_HEADER_LEN + formSize;
+	}
+
+	public boolean isForm(byte[] type) {
+		return matches(formType, 0, type);
+	}
+
+	/**
+	 * Moves to the next chunk.
+	 *
+	 * @return {@code false} when no further complete chunk header is left
+	 */
+	public boolean next() throws IOException {
+		if (nextOffset < 0 || fileSize - nextOffset < CHUNK_HEADER_LEN) {
+			nextOffset = -1;
+			return false;
+		}
+
+		header.clear();
+		channel.position(nextOffset);
+		if (WavFile.readFully(channel, header) < CHUNK_HEADER_LEN) {
+			nextOffset = -1;
+			return false;
+		}
+
+		offset = nextOffset;
+		size = header.getInt(4) & 0xffffffffL;
+		nextOffset = isTruncated() ? -1 : getDataOffset() + size + (size & 1);
+		return true;
+	}
+
+	public boolean isChunk(byte[] id) {
+		return matches(header.array(), 0, id);
+	}
+
+	public String getId() {
+		return new String(header.array(), 0, 4, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * @return the position of the chunk header in the file
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	public long getDataOffset() {
+		return offset + CHUNK_HEADER_LEN;
+	}
+
+	/**
+	 * @return the size declared in the chunk header
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the part of the declared size that is present in the file
+	 */
+	public long getAvailableSize() {
+		return Math.min(size, fileSize - getDataOffset());
+	}
+
+	public boolean isTruncated() {
+		return size > fileSize - getDataOffset();
+	}
+
+	/**
+	 * @return where the chunk ends in the file, including its pad byte if present
+	 */
+	public long getEndOffset() {
+		return Math.min(fileSize, getDataOffset() + size + (size & 1));
+	}
+
+	/**
+	 * Reads up to {@code maxLen} bytes from the start of the chunk body.
+	 */
+	public byte[] readData(int maxLen) throws IOException {
+		ByteBuffer data = ByteBuffer.allocate((int) Math.min(maxLen, getAvailableSize()));
+		channel.position(getDataOffset());
+		WavFile.readFully(channel, data);
+		return data.array();
+	}
+
+	/**
+	 * Reads the whole chunk including its header, or as much as is present.
+	 *
+	 * @return the chunk, or {@code null} if it is longer than {@code maxLen}
+	 */
+	public byte[] readChunk(int maxLen) throws IOException {
+		long length = CHUNK_HEADER_LEN + getAvailableSize();
+		if (length > maxLen) return null;
+
+		ByteBuffer chunk = ByteBuffer.allocate((int) length);
+		channel.position(offset);
+		WavFile.readFully(channel, chunk);
+		return chunk.array();
+	}
+
+	static boolean matches(byte[] bytes, int offset, byte[] id) {
+		if (bytes.length - offset < id.length) return false;
+		for (int i = 0; i < id.length; i++)
+			if (bytes[offset + i] != id[i]) return false;
+		return true;
+	}
+}
@@ -0,0 +1,43 @@
+package com.example.audiorecorder.audio;
+
+/**
+ * Encoding of a single sample in the little-endian, interleaved PCM blocks passed through the
+ * pipeline and stored in WAV files. 8-bit samples are unsigned, as WAV requires; 24-bit ones
+ * are packed into three bytes.
+ */
+public enum SampleFormat {
+	PCM_8(8, false),
+	PCM_16(16, false),
+	PCM_24(24, false),
+	FLOAT_32(32, true);
+
+	private final int bitsPerSample;
+	private final boolean floatingPoint;
+
+	SampleFormat(int bitsPerSample, boolean floatingPoint) {
+		this.bitsPerSample = bitsPerSample;
+		this.floatingPoint = floatingPoint;
+	}
+
+	/**
+	 * @return the format with the given sample size, or {@code null} if none matches
+	 */
+	public static SampleFormat of(int bitsPerSample, boolean floatingPoint) {
+		for (SampleFormat format : values())
+			if (format.bitsPerSample == bitsPerSample && format.floatingPoint == floatingPoint)
+				return format;
+		return null;
+	}
+
+	public int getBitsPerSample() {
+		return bitsPerSample;
+	}
+
+	public int getBytesPerSample() {
+		return bitsPerSample / 8;
+	}
+
+	public boolean isFloat() {
+		return floatingPoint;
+	}
+}
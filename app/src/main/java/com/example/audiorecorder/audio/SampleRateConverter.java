@@ -0,0 +1,243 @@
+package com.example.audiorecorder.audio;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Streaming sample rate conversion of interleaved 16-bit PCM by a rational factor, with a
+ * polyphase windowed-sinc filter.
+ * <p>
+ * The output rate over the input rate is reduced to {@code L / M}. Output frame {@code n}
+ * lies at input time {@code n * M / L}; its value is the input convolved with a Kaiser
+ * windowed sinc, low-passed below the lower of the two Nyquist frequencies. The filter is
+ * sampled once per possible fractional position, giving {@code L} phases of equal length,
+ * so each output frame costs one dot product per channel and no trigonometry.
+ * <p>
+ * Input may arrive in blocks of any size; the frames a later output still needs are kept
+ * in a history of fixed size. Output starts at input time zero, as if silence preceded the
+ * stream. Nothing is allocated after construction.
+ */
+public class SampleRateConverter {
+
+	// passband edge as a fraction of the lower Nyquist frequency
+	private static final double ROLLOFF = 0.85;
+	// sinc zero crossings on either side of the centre tap
+	private static final int ZERO_CROSSINGS = 32;
+	// Kaiser window shape, about 85 dB of stopband attenuation
+	private static final double KAISER_BETA = 8.6;
+	private static final int MAX_PHASES = 1024;
+	// input frames loaded into the history at a time
+	private static final int CHUNK_FRAMES = 1024;
+
+	private final int inputRate, outputRate;
+	private final int channels;
+	private final int interpolation, decimation;
+	private final int taps;
+	private final float[] coefficients;
+
+	// deinterleaved input; index 0 is the oldest frame still needed
+	private final float[][] history;
+	private int buffered;
+	// history index of the first tap of the next output frame, and its filter phase
+	private int next;
+	private int phase;
+
+	private final short[] chunkIn, chunkOut;
+
+	/**
+	 * @throws IllegalArgumentException if the rates reduce to a ratio needing more than
+	 *                                  {@value #MAX_PHASES} filter phases
+	 */
+	public SampleRateConverter(int inputRate, int outputRate, int channels) {
+		if (inputRate < 1 || outputRate < 1 || channels < 1)
+			throw new IllegalArgumentException("Invalid sample rate conversion");
+
+		int gcd = gcd(inputRate, outputRate);
+		this.inputRate = inputRate;
+		this.outputRate = outputRate;
+		this.channels = channels;
+		this.interpolation = outputRate / gcd;
+		this.decimation = inputRate / gcd;
+		if (interpolation > MAX_PHASES)
+			throw new IllegalArgumentException("Unsupported sample rate ratio: " + inputRate +
+					" to " + outputRate);
+
+		// cutoff in cycles per input frame; the window spans the same number of zero
+		// crossings whatever the cutoff
+		double cutoff = 0.5 * ROLLOFF * Math.min(1, (double) outputRate / inputRate);
+		int halfTaps = (int) Math.ceil(ZERO_CROSSINGS / (2 * cutoff));
+		taps = 2 * halfTaps;
+		coefficients = designFilter(interpolation, halfTaps, cutoff);
+
+		history = new float[channels][taps + CHUNK_FRAMES];
+		chunkIn = new short[CHUNK_FRAMES * channels];
+		chunkOut = new short[getMaxOutputFrames(CHUNK_FRAMES) * channels];
+		reset();
+	}
+
+	private static int gcd(int a, int b) {
+		while (b != 0) {
+			int rest = a % b;
+			a = b;
+			b = rest;
+		}
+		return a;
+	}
+
+	/**
+	 * Tap {@code k} of phase {@code p} weighs the input frame at distance
+	 * {@code p / L + halfTaps - 1 - k} before the output; every phase sums to one, so
+	 * silence stays silent and DC passes unchanged.
+	 */
+	private static float[] designFilter(int phases, int halfTaps, double cutoff) {
+		int taps = 2 * halfTaps;
+		float[] coefficients = new float[phases * taps];
+		double windowNorm = besselI0(KAISER_BETA);
+
+		for (int p = 0; p < phases; p++) {
+			double[] row = new double[taps];
+			double sum = 0;
+			for (int k = 0; k < taps; k++) {
+				double t = (double) p / phases + halfTaps - 1 - k;
+				double x = t / halfTaps;
+				double window = Math.abs(x) >= 1 ? 0 :
+						besselI0(KAISER_BETA * Math.sqrt(1 - x * x)) / windowNorm;
+				double sinc = t == 0 ? 1 : Math.sin(2 * Math.PI * cutoff * t) /
+						(2 * Math.PI * cutoff * t);
+				row[k] = 2 * cutoff * sinc * window;
+				sum += row[k];
+			}
+			for (int k = 0; k < taps; k++)
+				coefficients[p * taps + k] = (float) (row[k] / sum);
+		}
+		return coefficients;
+	}
+
+	// zeroth order modified Bessel function of the first kind, by its power series
+	private static double besselI0(double x) {
+		double sum = 1, term = 1;
+		for (int k = 1; term > 1e-12 * sum; k++) {
+			term *= (x / (2 * k)) * (x / (2 * k));
+			sum += term;
+		}
+		return sum;
+	}
+
+	public int getInputRate() {
+		return inputRate;
+	}
+
+	public int getOutputRate() {
+		return outputRate;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	/**
+	 * @return the most frames a single call can produce from {@code inputFrames} frames
+	 */
+	public int getMaxOutputFrames(int inputFrames) {
+		return (int) ((long) inputFrames * interpolation / decimation) + 2;
+	}
+
+	/**
+	 * @return the most input frames whose output is sure to fit into {@code outputFrames}
+	 */
+	public int getMaxInputFrames(int outputFrames) {
+		return (int) Math.max(0, (long) (outputFrames - 2) * decimation / interpolation);
+	}
+
+	/**
+	 * Forgets all input, e.g. before a new stream.
+	 */
+	public void reset() {
+		for (float[] channel : history)
+			Arrays.fill(channel, 0);
+		// the taps before the first frame read silence
+		buffered = taps / 2 - 1;
+		next = 0;
+		phase = 0;
+	}
+
+	/**
+	 * Converts {@code inputFrames} interleaved frames from {@code in} and writes every output
+	 * frame that is complete to {@code out}, which needs room for
+	 * {@link #getMaxOutputFrames(int)} frames.
+	 *
+	 * @return the number of frames written
+	 */
+	public int process(short[] in, int inOffset, int inputFrames, short[] out, int outOffset) {
+		int written = 0;
+		while (inputFrames > 0) {
+			int frames = Math.min(inputFrames, CHUNK_FRAMES);
+			for (int c = 0; c < channels; c++) {
+				float[] samples = history[c];
+				for (int f = 0; f < frames; f++)
+					samples[buffered + f] = in[inOffset + f * channels + c];
+			}
+			buffered += frames;
+			inOffset += frames * channels;
+			inputFrames -= frames;
+
+			written += drain(out, outOffset + written * channels);
+		}
+		return written;
+	}
+
+	/**
+	 * Converts the whole frames remaining in the little-endian {@code in} and puts the output
+	 * into {@code out}, which needs room for {@link #getMaxOutputFrames(int)} frames. Both
+	 * positions are advanced.
+	 */
+	public void process(ByteBuffer in, ByteBuffer out) {
+		int frameBytes = 2 * channels;
+		while (in.remaining() >= frameBytes) {
+			int frames = Math.min(CHUNK_FRAMES, in.remaining() / frameBytes);
+			for (int i = 0; i < frames * channels; i++)
+				chunkIn[i] = in.getShort();
+
+			int produced = process(chunkIn, 0, frames, chunkOut, 0);
+			for (int i = 0; i < produced * channels; i++)
+				out.putShort(chunkOut[i]);
+		}
+	}
+
+	// computes every output frame the history covers, then drops the frames no longer needed
+	private int drain(short[] out, int outOffset) {
+		int produced = 0;
+		int stepFrames = decimation / interpolation;
+		int stepPhase = decimation % interpolation;
+
+		while (next + taps <= buffered) {
+			int row = phase * taps;
+			for (int c = 0; c < channels; c++) {
+				float[] samples = history[c];
+				float sum = 0;
+				for (int k = 0; k < taps; k++)
+					sum += coefficients[row + k] * samples[next + k];
+
+				int sample = (int) (sum < 0 ? sum - 0.5f : sum + 0.5f);
+				out[outOffset++] = (short) Math.max(Short.MIN_VALUE,
+						Math.min(Short.MAX_VALUE, sample));
+			}
+			produced++;
+
+			next += stepFrames;
+			phase += stepPhase;
+			if (phase >= interpolation) {
+				phase -= interpolation;
+				next++;
+			}
+		}
+
+		int drop = Math.min(next, buffered);
+		for (float[] samples : history)
+			System.arraycopy(samples, drop, samples, 0, buffered - drop);
+		buffered -= drop;
+		next -= drop;
+
+		return produced;
+	}
+}
@@ -0,0 +1,146 @@
+package com.example.audiorecorder.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Run-length record of the silence trimmed out of a recording. Each segment says how many
+ * sample frames were dropped just before a given frame of the stored audio, so the original
+ * timeline can be rebuilt.
+ * <p>
+ * On disk this is the "slnc" chunk after the audio data: the chunk id, a little-endian
+ * uint32 size and then a pair of uint32 values (stored frame, dropped frames) per segment.
+ */
+public class SilenceIndex {
+
+	static final byte[] CHUNK_ID = "slnc".getBytes(StandardCharsets.US_ASCII);
+	private static final int CHUNK_HEADER_LEN = 8;
+	private static final int SEGMENT_LEN = 8;
+
+	private long[] positions = new long[16];
+	private long[] lengths = new long[16];
+	private int count = 0;
+
+	/**
+	 * Records {@code length} dropped frames at stored frame {@code position}; positions must
+	 * not decrease. Drops at the same position are merged into one segment.
+	 */
+	public void add(long position, long length) {
+		if (length <= 0) return;
+		if (count > 0 && position < positions[count - 1])
+			throw new IllegalArgumentException("Silence segments out of order");
+
+		if (count > 0 && positions[count - 1] == position) {
+			lengths[count - 1] += length;
+			return;
+		}
+
+		if (count == positions.length) {
+			positions = Arrays.copyOf(positions, count * 2);
+			lengths = Arrays.copyOf(lengths, count * 2);
+		}
+		positions[count] = position;
+		lengths[count] = length;
+		count++;
+	}
+
+	/**
+	 * Appends {@code other}, whose positions are relative to {@code offset} frames into this
+	 * recording, e.g. when recordings are merged.
+	 */
+	public void addAll(SilenceIndex other, long offset) {
+		for (int i = 0; i < other.count; i++)
+			add(other.positions[i] + offset, other.lengths[i]);
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	public int getSegmentCount() {
+		return count;
+	}
+
+	public long getPosition(int segment) {
+		return positions[segment];
+	}
+
+	public long getLength(int segment) {
+		return lengths[segment];
+	}
+
+	public long getTotalLength() {
+		long total = 0;
+		for (int i = 0; i < count; i++)
+			total += lengths[i];
+		return total;
+	}
+
+	/**
+	 * Maps a frame of the stored audio to its frame in the original, untrimmed timeline.
+	 */
+	public long toOriginalFrame(long storedFrame) {
+		long original = storedFrame;
+		for (int i = 0; i < count && positions[i] <= storedFrame; i++)
+			original += lengths[i];
+		return original;
+	}
+
+	int getChunkLength() {
+		return isEmpty() ? 0 : CHUNK_HEADER_LEN + count * SEGMENT_LEN;
+	}
+
+	/**
+	 * @return the "slnc" chunk, or an empty array when nothing was trimmed
+	 */
+	byte[] toChunk() {
+		if (isEmpty()) return new byte[0];
+
+		ByteBuffer chunk = ByteBuffer.allocate(getChunkLength()).order(ByteOrder.LITTLE_ENDIAN);
+		chunk.put(CHUNK_ID);
+		chunk.putInt(count * SEGMENT_LEN);
+		for (int i = 0; i < count; i++) {
+			chunk.putInt((int) positions[i]);
+			chunk.putInt((int) lengths[i]);
+		}
+		return chunk.array();
+	}
+
+	/**
+	 * Parses a "slnc" chunk at the start of {@code trailer}.
+	 *
+	 * @return the index, or an empty one when the trailer does not start with the chunk or
+	 * the chunk is truncated
+	 */
+	static SilenceIndex fromTrailer(byte[] trailer) {
+		SilenceIndex index = new SilenceIndex();
+		if (!startsWithChunk(trailer)) return index;
+
+		ByteBuffer chunk = ByteBuffer.wrap(trailer).order(ByteOrder.LITTLE_ENDIAN);
+		long size = chunk.getInt(CHUNK_ID.length) & 0xffffffffL;
+		if (size % SEGMENT_LEN != 0 || size > trailer.length - CHUNK_HEADER_LEN) return index;
+
+		chunk.position(CHUNK_HEADER_LEN);
+		for (long i = 0; i < size / SEGMENT_LEN; i++) {
+			long position = chunk.getInt() & 0xffffffffL;
+			long length = chunk.getInt() & 0xffffffffL;
+			if (index.count > 0 && position < index.positions[index.count - 1])
+				return new SilenceIndex();
+			index.add(position, length);
+		}
+		return index;
+	}
+
+	static boolean startsWithChunk(byte[] trailer) {
+		return startsWithChunk(trailer, 0);
+	}
+
+	static boolean startsWithChunk(byte[] bytes, int offset) {
+		if (bytes.length - offset < CHUNK_HEADER_LEN) return false;
+		for (int i = 0; i < CHUNK_ID.length; i++)
+			if (bytes[offset + i] != CHUNK_ID[i]) return false;
+		return true;
+	}
+}
@@ -0,0 +1,112 @@
+package com.example.audiorecorder.audio;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Deterministic mono test signal generated on demand, faster than real time.
+ */
+public class SyntheticAudioSource implements IAudioSource {
+
+	public enum Signal {
+		SINE,
+		NOISE,
+		SILENCE_BURSTS
+	}
+
+	private final Signal signal;
+	private final int sampleRate;
+	private final double phaseStep;
+	private final int amplitude;
+	private final long totalSamples;
+
+	private int burstSamples;
+	private long position;
+	private int noiseState;
+
+	/**
+	 * @param totalSamples number of samples before {@link #END_OF_STREAM}, or -1 for an
+	 *                     endless signal
+	 */
+	public SyntheticAudioSource(Signal signal, int sampleRate, double frequency, int amplitude,
+	                            long totalSamples) {
+		this.signal = signal;
+		this.sampleRate = sampleRate;
+		this.phaseStep = 2 * Math.PI * frequency / sampleRate;
+		this.amplitude = amplitude;
+		this.totalSamples = totalSamples;
+		burstSamples = sampleRate / 2;
+	}
+
+	public void setBurstLength(int burstSamples) {
+		this.burstSamples = Math.max(1, burstSamples);
+	}
+
+	@Override
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	@Override
+	public int getChannels() {
+		return 1;
+	}
+
+	@Override
+	public SampleFormat getSampleFormat() {
+		return SampleFormat.PCM_16;
+	}
+
+	@Override
+	public void start() {
+		position = 0;
+		noiseState = 0x2545F491;
+	}
+
+	@Override
+	public int read(ByteBuffer buffer) {
+		buffer.clear();
+
+		int samples = buffer.capacity() / 2;
+		if (totalSamples >= 0) {
+			if (position >= totalSamples)
+				return END_OF_STREAM;
+			samples = (int) Math.min(samples, totalSamples - position);
+		}
+
+		for (int i = 0; i < samples; i++)
+			buffer.putShort(i * 2, nextSample());
+
+		buffer.limit(samples * 2);
+		return samples * 2;
+	}
+
+	private short nextSample() {
+		long n = position++;
+
+		switch (signal) {
+			case NOISE:
+				noiseState ^= noiseState << 13;
+				noiseState ^= noiseState >>> 17;
+				noiseState ^= noiseState << 5;
+				return (short) ((long) (noiseState >> 16) * amplitude / Short.MAX_VALUE);
+			case SILENCE_BURSTS:
+				// tone during the active half of each period
+				return (n / burstSamples) % 2 == 1 ? 0 : sine(n);
+			case SINE:
+			default:
+				return sine(n);
+		}
+	}
+
+	private short sine(long n) {
+		return (short) (amplitude * Math.sin(phaseStep * n));
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	@Override
+	public void release() {
+	}
+}
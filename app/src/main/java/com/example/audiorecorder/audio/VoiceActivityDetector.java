@@ -0,0 +1,362 @@
+package com.example.audiorecorder.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Energy based voice activity detection over little-endian blocks of interleaved samples in
+ * any {@link SampleFormat}. Levels are measured over all channels of a frame and expressed in
+ * 16-bit sample units whatever the format, so thresholds and meters do not depend on it.
+ * <p>
+ * A segment opens once {@code attackFrames} consecutive frames reach the open level and stays
+ * open until the level has been under the lower close level for {@code hangoverFrames}. The
+ * last {@code preRollFrames} frames before a segment are kept in a ring buffer and written
+ * ahead of it, so word onsets are not cut off. Frames that leave the pre-roll unwritten are
+ * reported to the sink as skipped, keeping the original timeline recoverable. Nothing is
+ * allocated after construction.
+ */
+public class VoiceActivityDetector {
+
+	public static final int DEFAULT_FRAME_MS = 10;
+	public static final double DEFAULT_OPEN_LEVEL = -45;
+	public static final double DEFAULT_CLOSE_LEVEL = -51;
+	public static final int DEFAULT_ATTACK_MS = 30;
+	public static final int DEFAULT_HANGOVER_MS = 300;
+	public static final int DEFAULT_PRE_ROLL_MS = 200;
+
+	private final SampleFormat sampleFormat;
+	private final int frameBytes;
+	private final double openEnergy, closeEnergy;
+	private final int attackFrames, hangoverFrames;
+
+	private final ByteBuffer preRollWriter, preRollReader;
+	private final int[] preRollLengths;
+	private int preRollHead = 0, preRollCount = 0;
+
+	private boolean voiced = false;
+	private int framesAbove = 0;
+	private int hangoverLeft = 0;
+
+	// levels of the last processed block, gathered in the same pass as the frame energies
+	private int blockPeak = 0;
+	private double blockSumSquares = 0;
+	private int blockSamples = 0;
+
+	/**
+	 * Default settings for 16-bit mono.
+	 */
+	public VoiceActivityDetector(int sampleRate) {
+		this(sampleRate, 1, SampleFormat.PCM_16);
+	}
+
+	/**
+	 * Default settings; the frame is the smallest power of two of sample frames covering
+	 * {@link #DEFAULT_FRAME_MS}, so it divides the capture block evenly.
+	 */
+	public VoiceActivityDetector(int sampleRate, int channels, SampleFormat sampleFormat) {
+		this(sampleRate, channels, sampleFormat,
+				Integer.highestOneBit(sampleRate * DEFAULT_FRAME_MS / 1000 * 2 - 1),
+				DEFAULT_OPEN_LEVEL, DEFAULT_CLOSE_LEVEL,
+				DEFAULT_ATTACK_MS, DEFAULT_HANGOVER_MS, DEFAULT_PRE_ROLL_MS);
+	}
+
+	/**
+	 * @param openLevel  RMS level in dBFS that a frame needs to count towards the attack
+	 * @param closeLevel RMS level in dBFS under which an open segment starts its hangover
+	 */
+	public VoiceActivityDetector(int sampleRate, int channels, SampleFormat sampleFormat,
+								 int frameSamples, double openLevel, double closeLevel,
+								 int attackMs, int hangoverMs, int preRollMs) {
+		this(sampleFormat, channels, frameSamples, openLevel, closeLevel,
+				msToFrames(attackMs, sampleRate, frameSamples),
+				msToFrames(hangoverMs, sampleRate, frameSamples),
+				msToFrames(preRollMs, sampleRate, frameSamples));
+	}
+
+	public VoiceActivityDetector(int frameSamples, double openLevel, double closeLevel,
+								 int attackFrames, int hangoverFrames, int preRollFrames) {
+		this(SampleFormat.PCM_16, 1, frameSamples, openLevel, closeLevel, attackFrames,
+				hangoverFrames, preRollFrames);
+	}
+
+	/**
+	 * @param frameSamples sample frames per analysis frame, each holding all channels
+	 */
+	public VoiceActivityDetector(SampleFormat sampleFormat, int channels, int frameSamples,
+								 double openLevel, double closeLevel, int attackFrames,
+								 int hangoverFrames, int preRollFrames) {
+		if (frameSamples <= 0 || channels <= 0 || attackFrames <= 0 || hangoverFrames < 0 ||
+				preRollFrames < 0)
+			throw new IllegalArgumentException("Invalid voice activity detector settings");
+		if (closeLevel > openLevel)
+			throw new IllegalArgumentException("Close level above open level");
+
+		this.sampleFormat = sampleFormat;
+		this.frameBytes = frameSamples * channels * sampleFormat.getBytesPerSample();
+		this.openEnergy = levelToEnergy(openLevel);
+		this.closeEnergy = levelToEnergy(closeLevel);
+		this.attackFrames = attackFrames;
+		this.hangoverFrames = hangoverFrames;
+
+		// the frames that built up the attack must fit, or the onset would be lost
+		int slots = Math.max(preRollFrames, attackFrames - 1);
+		ByteBuffer preRoll = ByteBuffer.allocateDirect(slots * frameBytes)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		preRollWriter = preRoll.duplicate();
+		preRollReader = preRoll.duplicate();
+		preRollLengths = new int[slots];
+	}
+
+	private static int msToFrames(int ms, int sampleRate, int frameSamples) {
+		return (int) Math.round((double) ms * sampleRate / 1000 / frameSamples);
+	}
+
+	// mean square of a full scale-relative RMS level, in squared sample units
+	private static double levelToEnergy(double level) {
+		double amplitude = Short.MAX_VALUE * Math.pow(10, level / 20);
+		return amplitude * amplitude;
+	}
+
+	public int getFrameBytes() {
+		return frameBytes;
+	}
+
+	public boolean isVoiced() {
+		return voiced;
+	}
+
+	/**
+	 * @return the largest absolute sample of the last processed block
+	 */
+	public int getBlockPeak() {
+		return blockPeak;
+	}
+
+	/**
+	 * @return the RMS amplitude of the last processed block, in sample units
+	 */
+	public double getBlockRms() {
+		return blockSamples == 0 ? 0 : Math.sqrt(blockSumSquares / blockSamples);
+	}
+
+	/**
+	 * Forgets the current segment and the pre-roll, e.g. before a new recording.
+	 */
+	public void reset() {
+		voiced = false;
+		framesAbove = 0;
+		hangoverLeft = 0;
+		preRollHead = 0;
+		preRollCount = 0;
+	}
+
+	/**
+	 * Reports whatever is still held in the pre-roll as skipped, e.g. at the end of a
+	 * recording, and forgets it. The segment state is kept.
+	 */
+	public void finish(IAudioSink output) throws IOException {
+		int slots = preRollLengths.length;
+		int slot = (preRollHead - preRollCount + slots) % Math.max(1, slots);
+
+		for (int i = 0; i < preRollCount; i++) {
+			skip(output, preRollLengths[slot]);
+			slot = (slot + 1) % slots;
+		}
+		preRollCount = 0;
+	}
+
+	/**
+	 * Classifies the remaining bytes of {@code block} frame by frame and writes the voiced
+	 * parts, preceded by their pre-roll, to {@code output}. A {@code null} output only tracks
+	 * the state. The block's position and limit are left unchanged.
+	 *
+	 * @return whether any part of the block was voiced
+	 */
+	public boolean process(ByteBuffer block, IAudioSink output) throws IOException {
+		int start = block.position();
+		int end = block.limit();
+		int runStart = -1;
+		boolean anyVoiced = false;
+
+		blockPeak = 0;
+		blockSumSquares = 0;
+		blockSamples = 0;
+
+		try {
+			for (int frame = start; frame < end; frame += frameBytes) {
+				// writes below narrow the block, absolute reads are checked against the limit
+				block.limit(end);
+				int frameEnd = Math.min(frame + frameBytes, end);
+				double energy = frameEnergy(block, frame, frameEnd);
+
+				if (!voiced) {
+					framesAbove = energy >= openEnergy ? framesAbove + 1 : 0;
+					if (framesAbove < attackFrames) {
+						pushPreRoll(output, block, frame, frameEnd);
+						continue;
+					}
+
+					voiced = true;
+					hangoverLeft = hangoverFrames;
+					flushPreRoll(output);
+				} else if (energy >= closeEnergy) {
+					hangoverLeft = hangoverFrames;
+				} else if (hangoverLeft > 0) {
+					hangoverLeft--;
+				} else {
+					voiced = false;
+					framesAbove = 0;
+					if (runStart >= 0)
+						write(output, block, runStart, frame);
+					runStart = -1;
+					pushPreRoll(output, block, frame, frameEnd);
+					continue;
+				}
+
+				anyVoiced = true;
+				if (runStart < 0)
+					runStart = frame;
+			}
+
+			if (runStart >= 0)
+				write(output, block, runStart, end);
+		} finally {
+			block.limit(end);
+			block.position(start);
+		}
+
+		return anyVoiced;
+	}
+
+	/**
+	 * Mean square of the frame in 16-bit sample units; also accumulates the block's peak and
+	 * RMS. Each format has its own loop, so samples are decoded inline and scaled once per
+	 * frame rather than dispatched or converted one by one.
+	 */
+	private double frameEnergy(ByteBuffer block, int from, int to) {
+		switch (sampleFormat) {
+			case PCM_8:
+				return frameEnergy8(block, from, to);
+			case PCM_24:
+				return frameEnergy24(block, from, to);
+			case FLOAT_32:
+				return frameEnergyFloat(block, from, to);
+			case PCM_16:
+			default:
+				return frameEnergy16(block, from, to);
+		}
+	}
+
+	private double frameEnergy16(ByteBuffer block, int from, int to) {
+		long sum = 0;
+		int peak = blockPeak;
+		for (int i = from; i + 1 < to; i += 2) {
+			int sample = block.getShort(i);
+			sum += sample * sample;
+			peak = Math.max(peak, Math.abs(sample));
+		}
+		return accumulate(sum, peak, (to - from) / 2);
+	}
+
+	// unsigned, centred on 128
+	private double frameEnergy8(ByteBuffer block, int from, int to) {
+		long sum = 0;
+		int peak = blockPeak >> 8;
+		for (int i = from; i < to; i++) {
+			int sample = (block.get(i) & 0xff) - 128;
+			sum += sample * sample;
+			peak = Math.max(peak, Math.abs(sample));
+		}
+		return accumulate(sum * 65536.0, Math.min(Short.MAX_VALUE, peak << 8), to - from);
+	}
+
+	private double frameEnergy24(ByteBuffer block, int from, int to) {
+		long sum = 0;
+		int peak = blockPeak << 8;
+		for (int i = from; i + 2 < to; i += 3) {
+			int sample = (block.get(i) & 0xff) | (block.get(i + 1) & 0xff) << 8 |
+					block.get(i + 2) << 16;
+			sum += (long) sample * sample;
+			peak = Math.max(peak, Math.abs(sample));
+		}
+		return accumulate(sum / 65536.0, Math.min(Short.MAX_VALUE, peak >> 8), (to - from) / 3);
+	}
+
+	private double frameEnergyFloat(ByteBuffer block, int from, int to) {
+		double sum = 0;
+		float peak = blockPeak / (float) Short.MAX_VALUE;
+		for (int i = from; i + 3 < to; i += 4) {
+			float sample = block.getFloat(i);
+			sum += sample * sample;
+			peak = Math.max(peak, Math.abs(sample));
+		}
+		return accumulate(sum * Short.MAX_VALUE * Short.MAX_VALUE,
+				(int) Math.min(Short.MAX_VALUE, peak * Short.MAX_VALUE), (to - from) / 4);
+	}
+
+	private double accumulate(double sum, int peak, int samples) {
+		blockPeak = peak;
+		blockSumSquares += sum;
+		blockSamples += samples;
+		return sum / Math.max(1, samples);
+	}
+
+	private void write(IAudioSink output, ByteBuffer source, int from, int to)
+			throws IOException {
+		if (output == null || from >= to) return;
+
+		source.limit(to);
+		source.position(from);
+		output.appendAudioBytes(source);
+	}
+
+	private static void skip(IAudioSink output, int byteCount) throws IOException {
+		if (output != null)
+			output.skipAudioBytes(byteCount);
+	}
+
+	private void pushPreRoll(IAudioSink output, ByteBuffer block, int from, int to)
+			throws IOException {
+		int slots = preRollLengths.length;
+		if (slots == 0) {
+			skip(output, to - from);
+			return;
+		}
+
+		// the oldest frame is overwritten, it will never be written
+		if (preRollCount == slots)
+			skip(output, preRollLengths[preRollHead]);
+
+		int offset = preRollHead * frameBytes;
+		preRollWriter.limit(offset + to - from);
+		preRollWriter.position(offset);
+		block.limit(to);
+		block.position(from);
+		preRollWriter.put(block);
+
+		preRollLengths[preRollHead] = to - from;
+		preRollHead = (preRollHead + 1) % slots;
+		preRollCount = Math.min(preRollCount + 1, slots);
+	}
+
+	// oldest first; slots that are adjacent in the ring buffer go out in a single write
+	private void flushPreRoll(IAudioSink output) throws IOException {
+		int slots = preRollLengths.length;
+		int slot = (preRollHead - preRollCount + slots) % Math.max(1, slots);
+		int runStart = 0, runEnd = 0;
+
+		for (int i = 0; i < preRollCount; i++) {
+			int offset = slot * frameBytes;
+			if (offset != runEnd) {
+				write(output, preRollReader, runStart, runEnd);
+				runStart = offset;
+			}
+			runEnd = offset + preRollLengths[slot];
+			slot = (slot + 1) % slots;
+		}
+		write(output, preRollReader, runStart, runEnd);
+
+		preRollCount = 0;
+	}
+}
@@ -5,80 +5,341 @@ import org.apache.commons.lang3.ArrayUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.Arrays;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class WavFile {
 
-	private final byte[] header;
 	private byte[] data;
 
 	private long totalAudioLen;
-	private long totalDataLen;
+	private long trailerLen;
 	private long sampleRate;
-	private int bitsPerSample;
+	private SampleFormat sampleFormat;
 	private int channels;
 
 	private HashMap<String, String> metadata;
+	private SilenceIndex silenceIndex = new SilenceIndex();
+	// negative: right behind the header built by getHeader()
+	private long audioOffset = -1;
 	public static final String NAME_TAG = "NAME";
 	public static final String SURNAME_TAG = "SURN";
 	public static final String DATE_TAG = "DATE";
 	public static final String TIME_TAG = "TIME";
 	public static final String TITLE_TAG = "TITL";
 	public static final String COMMENT_TAG = "COMM";
-
-
-	private static final int HEADER_LEN = 36;
-	private static final int DATA_HEADER_LEN = 8;
+	public static final String[] METADATA_TAGS = {NAME_TAG, SURNAME_TAG, DATE_TAG, TIME_TAG,
+			TITLE_TAG, COMMENT_TAG};
+
+
+	private static final int RIFF_HEADER_LEN = 12;
+	private static final int CHUNK_HEADER_LEN = 8;
+	private static final byte[] RIFF_ID = "RIFF".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] LEGACY_METADATA_ID = "id3 ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] ID3_MAGIC = "ID3".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] WAVE_ID = "WAVE".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] FMT_ID = "fmt ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] DATA_ID = "data".getBytes(StandardCharsets.US_ASCII);
+	private static final int WAVE_FORMAT_PCM = 1;
+	private static final int WAVE_FORMAT_IEEE_FLOAT = 3;
+	private static final int WAVE_FORMAT_EXTENSIBLE = 0xfffe;
+	// the sub-format GUID of WAVE_FORMAT_EXTENSIBLE is the format tag followed by these bytes
+	private static final byte[] SUBFORMAT_GUID_TAIL = {0x00, 0x00, 0x00, 0x00, 0x10, 0x00,
+			(byte) 0x80, 0x00, 0x00, (byte) 0xaa, 0x00, 0x38, (byte) 0x9b, 0x71};
+	private static final int SPEAKER_FRONT_LEFT_RIGHT = 0x3;
+	private static final int SPEAKER_FRONT_CENTER = 0x4;
+	private static final int FORMAT_LEN = 16;
+	private static final int EXTENSIBLE_FORMAT_LEN = 40;
+	private static final int MAX_FORMAT_LEN = 64;
+	static final int MAX_TRAILER_LEN = 256 * 1024;
 
 	public WavFile(long sampleRate, int channels) {
-		header = prepareEmptyWavFileHeader();
+		this(sampleRate, channels, SampleFormat.PCM_16);
+	}
+
+	public WavFile(long sampleRate, int channels, SampleFormat sampleFormat) {
 		metadata = new HashMap<>();
-		metadata.put(NAME_TAG, null);
-		metadata.put(SURNAME_TAG, null);
-		metadata.put(DATE_TAG, null);
-		metadata.put(TIME_TAG, null);
-		metadata.put(TITLE_TAG, null);
-		metadata.put(COMMENT_TAG, null);
-		setTotalDataLen(HEADER_LEN);
+		for (String tag : METADATA_TAGS)
+			metadata.put(tag, null);
 		setSampleRate(sampleRate);
 		setChannels(channels);
-		setBitsPerSample(16);
+		setSampleFormat(sampleFormat);
 	}
 
 	public static WavFile fromFile(File wavFile) {
-		byte[] fileBytes;
+		try (SeekableByteChannel channel = Files.newByteChannel(wavFile.toPath(),
+				StandardOpenOption.READ)) {
+			WavFile resWav = probe(channel);
+			if (resWav == null) return null;
 
-		try {
-			fileBytes = Files.readAllBytes(wavFile.toPath());
+			ByteBuffer audio = ByteBuffer.allocate((int) resWav.totalAudioLen);
+			channel.position(resWav.audioOffset);
+			readFully(channel, audio);
+			resWav.data = audio.array();
+
+			return resWav;
 		} catch (IOException e) {
 			e.printStackTrace();
 			return null;
 		}
+	}
 
-		if (fileBytes.length < HEADER_LEN + DATA_HEADER_LEN) return null;
+	/**
+	 * Reads only the chunk headers, the format and the metadata; the audio payload is
+	 * skipped, so the returned instance carries format, length and metadata but no audio
+	 * bytes. Chunks may come in any order and unknown ones are skipped, so files written by
+	 * other tools are read as well.
+	 */
+	public static WavFile probe(File wavFile) {
+		try (SeekableByteChannel channel = Files.newByteChannel(wavFile.toPath(),
+				StandardOpenOption.READ)) {
+			return probe(channel);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
 
-		byte[] header = Arrays.copyOfRange(fileBytes, 0, HEADER_LEN + DATA_HEADER_LEN);
+	static WavFile probe(SeekableByteChannel channel) throws IOException {
+		RiffChunkIterator chunks = RiffChunkIterator.open(channel);
+		if (chunks == null || !chunks.isForm(WAVE_ID)) return null;
 
-		int totalDataLen = readTotalDataLen(header);
-		byte[] data = Arrays.copyOfRange(fileBytes, HEADER_LEN + DATA_HEADER_LEN,
-				totalDataLen + DATA_HEADER_LEN);
+		WavFile resWav = null;
+		long audioOffset = -1, audioLen = 0;
+		SilenceIndex silenceIndex = new SilenceIndex();
+		HashMap<String, String> metadata = new HashMap<>();
 
-		HashMap<String, String> metadata = readMetadata(
-				Arrays.copyOfRange(fileBytes, totalDataLen + DATA_HEADER_LEN, fileBytes.length));
+		while (chunks.next()) {
+			if (chunks.isChunk(FMT_ID)) {
+				resWav = fromFormat(chunks.readData(MAX_FORMAT_LEN));
+				if (resWav == null) return null;
+			} else if (chunks.isChunk(DATA_ID) && audioOffset < 0) {
+				audioOffset = chunks.getDataOffset();
+				audioLen = chunks.getAvailableSize();
+			} else if (isLegacyMetadata(chunks)) {
+				// no size of its own, the text runs to the end of the file
+				channel.position(chunks.getOffset() + LEGACY_METADATA_ID.length);
+				ByteBuffer text = ByteBuffer.allocate((int) Math.min(MAX_TRAILER_LEN,
+						channel.size() - channel.position()));
+				readFully(channel, text);
+				metadata.putAll(readLegacyMetadata(text.array()));
+				break;
+			} else if (chunks.isChunk(SilenceIndex.CHUNK_ID)) {
+				byte[] chunk = chunks.readChunk(MAX_TRAILER_LEN);
+				if (chunk != null) silenceIndex = SilenceIndex.fromTrailer(chunk);
+			} else if (InfoChunk.isChunk(chunks)) {
+				byte[] chunk = chunks.readChunk(MAX_TRAILER_LEN);
+				if (chunk != null) metadata.putAll(InfoChunk.fromChunk(chunk, 0));
+			}
+		}
 
-		WavFile resWav = new WavFile(readSampleRate(header), readChannels(header));
-		resWav.metadata = metadata;
-		resWav.appendAudioBytes(data);
+		if (resWav == null || audioOffset < 0) return null;
 
+		resWav.audioOffset = audioOffset;
+		resWav.setAudioLength(audioLen - audioLen % resWav.getBlockAlign());
+		resWav.silenceIndex = silenceIndex;
+		resWav.metadata.putAll(metadata);
 		return resWav;
 	}
 
+	// the "fmt " chunk body; integer PCM and float, plain or WAVE_FORMAT_EXTENSIBLE
+	private static WavFile fromFormat(byte[] format) {
+		if (format.length < FORMAT_LEN) return null;
+
+		ByteBuffer fields = ByteBuffer.wrap(format).order(ByteOrder.LITTLE_ENDIAN);
+		int formatTag = fields.getShort(0) & 0xffff;
+		int channels = fields.getShort(2) & 0xffff;
+		long sampleRate = fields.getInt(4) & 0xffffffffL;
+		int blockAlign = fields.getShort(12) & 0xffff;
+		int bitsPerSample = fields.getShort(14) & 0xffff;
+
+		if (formatTag == WAVE_FORMAT_EXTENSIBLE) {
+			if (format.length < EXTENSIBLE_FORMAT_LEN ||
+					!RiffChunkIterator.matches(format, 26, SUBFORMAT_GUID_TAIL))
+				return null;
+			formatTag = fields.getShort(24) & 0xffff;
+		}
+
+		SampleFormat sampleFormat = formatTag == WAVE_FORMAT_PCM ||
+				formatTag == WAVE_FORMAT_IEEE_FLOAT ?
+				SampleFormat.of(bitsPerSample, formatTag == WAVE_FORMAT_IEEE_FLOAT) : null;
+		if (sampleFormat == null || channels < 1 || sampleRate < 1 ||
+				blockAlign != channels * sampleFormat.getBytesPerSample())
+			return null;
+
+		return new WavFile(sampleRate, channels, sampleFormat);
+	}
+
+	/**
+	 * Files from before the INFO chunk end in a bare "id3 key:value;" text. Unlike a real
+	 * "id3 " chunk it has no size, so the bytes after the id either run past the end of the
+	 * file or are not followed by an ID3 tag.
+	 */
+	private static boolean isLegacyMetadata(RiffChunkIterator chunks) throws IOException {
+		return chunks.isChunk(LEGACY_METADATA_ID) && (chunks.isTruncated() ||
+				!RiffChunkIterator.matches(chunks.readData(ID3_MAGIC.length), 0, ID3_MAGIC));
+	}
+
+	/**
+	 * Parses only the chunks up to the data chunk header; the audio length is taken as
+	 * written, which for an unfinished file may be zero. Whatever the RIFF size declares
+	 * behind the audio is taken as the trailer length.
+	 */
+	static WavFile readHeader(SeekableByteChannel channel) throws IOException {
+		RiffChunkIterator chunks = RiffChunkIterator.open(channel);
+		if (chunks == null || !chunks.isForm(WAVE_ID)) return null;
+
+		WavFile resWav = null;
+		while (chunks.next()) {
+			if (chunks.isChunk(FMT_ID)) {
+				resWav = fromFormat(chunks.readData(MAX_FORMAT_LEN));
+				if (resWav == null) return null;
+			} else if (chunks.isChunk(DATA_ID)) {
+				if (resWav == null) return null;
+				resWav.audioOffset = chunks.getDataOffset();
+				resWav.setAudioLength(chunks.getSize(), Math.max(0, chunks.getFormEndOffset() -
+						chunks.getDataOffset() - chunks.getSize()));
+				return resWav;
+			}
+		}
+		return null;
+	}
+
+	static int readFully(SeekableByteChannel channel, ByteBuffer buffer)
+			throws IOException {
+		int total = 0;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer);
+			if (read < 0) break;
+			total += read;
+		}
+		return total;
+	}
+
+	/**
+	 * Concatenates the audio of {@code filesToMerge} onto {@code baseFile} without loading
+	 * it: the PCM regions are transferred channel-to-channel into a temporary file which
+	 * then atomically replaces the base file. The base file's metadata is kept.
+	 */
+	public static boolean mergeFiles(File baseFile, List<File> filesToMerge) {
+		WavFile baseWav = probe(baseFile);
+		if (baseWav == null) return false;
+
+		ArrayList<WavFile> wavsToMerge = new ArrayList<>();
+		for (File file : filesToMerge) {
+			WavFile wav = probe(file);
+			if (wav == null || wav.sampleRate != baseWav.sampleRate ||
+					wav.channels != baseWav.channels || wav.sampleFormat != baseWav.sampleFormat)
+				return false;
+			wavsToMerge.add(wav);
+		}
+
+		File tmpFile = new File(baseFile.getPath() + ".tmp");
+
+		try {
+			try (WavWriter writer = new WavWriter(tmpFile, baseWav.sampleRate, baseWav.channels,
+					baseWav.sampleFormat)) {
+				for (Map.Entry<String, String> entry : baseWav.metadata.entrySet())
+					writer.insertMetadataTag(entry.getKey(), entry.getValue());
+
+				transferAudio(writer, baseFile, baseWav);
+				for (int i = 0; i < filesToMerge.size(); i++)
+					transferAudio(writer, filesToMerge.get(i), wavsToMerge.get(i));
+			}
+
+			Files.move(tmpFile.toPath(), baseFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			e.printStackTrace();
+			tmpFile.delete();
+			return false;
+		}
+
+		return true;
+	}
+
+	private static void transferAudio(WavWriter writer, File file, WavFile wav)
+			throws IOException {
+		try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			copyAudio(writer, source, wav, null);
+		}
+	}
+
+	/**
+	 * Writes a copy of {@code sourceFile} with its trimmed silence put back as digital
+	 * silence, so positions in the copy match the original recording time. Audio is
+	 * transferred channel-to-channel; the metadata is kept.
+	 */
+	public static boolean restoreTimeline(File sourceFile, File targetFile) {
+		WavFile wav = probe(sourceFile);
+		if (wav == null) return false;
+
+		int blockAlign = wav.getBlockAlign();
+		ByteBuffer zeros = ByteBuffer.allocateDirect(64 * 1024 - 64 * 1024 % blockAlign);
+
+		try (FileChannel source = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ);
+			 WavWriter writer = new WavWriter(targetFile, wav.sampleRate, wav.channels,
+					 wav.sampleFormat)) {
+			for (Map.Entry<String, String> entry : wav.metadata.entrySet())
+				writer.insertMetadataTag(entry.getKey(), entry.getValue());
+
+			copyAudio(writer, source, wav, zeros);
+		} catch (IOException e) {
+			e.printStackTrace();
+			targetFile.delete();
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Copies the audio of {@code wav} segment by segment. Each trimmed gap is either written
+	 * out from {@code zeros} or, when that is {@code null}, carried over into the writer's
+	 * silence index.
+	 */
+	private static void copyAudio(WavWriter writer, FileChannel source, WavFile wav,
+								  ByteBuffer zeros) throws IOException {
+		int blockAlign = wav.getBlockAlign();
+		long copied = 0;
+
+		for (int i = 0; i < wav.silenceIndex.getSegmentCount(); i++) {
+			long position = Math.min(wav.silenceIndex.getPosition(i) * blockAlign,
+					wav.totalAudioLen);
+			writer.appendAudioBytes(source, wav.getAudioOffset() + copied, position - copied);
+			copied = position;
+
+			long gap = wav.silenceIndex.getLength(i) * blockAlign;
+			if (zeros == null) {
+				writer.skipAudioBytes(gap);
+				continue;
+			}
+			while (gap > 0) {
+				zeros.clear();
+				if (gap < zeros.capacity())
+					zeros.limit((int) gap);
+				gap -= zeros.remaining();
+				writer.appendAudioBytes(zeros);
+			}
+		}
+
+		writer.appendAudioBytes(source, wav.getAudioOffset() + copied,
+				wav.totalAudioLen - copied);
+	}
+
 	public static WavFile merged(WavFile wavFile1, WavFile wavFile2) {
-		WavFile resWav = new WavFile(wavFile1.sampleRate, wavFile1.channels);
+		WavFile resWav = new WavFile(wavFile1.sampleRate, wavFile1.channels,
+				wavFile1.sampleFormat);
 		resWav.metadata = wavFile1.metadata;
 		resWav.appendAudioBytes(wavFile1.data);
 		resWav.appendAudioBytes(wavFile2.data);
@@ -86,41 +347,82 @@ public class WavFile {
 		return resWav;
 	}
 
-	private static int readTotalDataLen(byte[] header) {
-		int b1 = header[4] & 0xff;
-		int b2 = header[5] & 0xff;
-		int b3 = header[6] & 0xff;
-		int b4 = header[7] & 0xff;
-		return (b4 << 24) | (b3 << 16) | (b2 << 8) | b1;
-	}
+	/**
+	 * Replaces metadata tags of {@code wavFile} in place; a {@code null} value removes the
+	 * tag. The first metadata chunk after the audio and whatever follows it are rewritten and
+	 * the RIFF size is patched, so the I/O depends on the size of the metadata, not of the
+	 * audio. Chunks in front of it stay in place, files in the old "id3 " format are
+	 * converted on the way.
+	 */
+	public static boolean updateMetadata(File wavFile, Map<String, String> changes) {
+		try (FileChannel channel = FileChannel.open(wavFile.toPath(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			WavFile wav = probe(channel);
+			if (wav == null) return false;
+			wav.metadata.putAll(changes);
+
+			long audioEnd = wav.audioOffset + wav.totalAudioLen;
+			long metadataStart = -1, metadataEnd = -1, end = audioEnd;
+			RiffChunkIterator chunks = RiffChunkIterator.open(channel);
+			while (chunks != null && chunks.next()) {
+				if (chunks.getOffset() < audioEnd) continue;
+
+				boolean legacy = isLegacyMetadata(chunks);
+				if (metadataStart < 0 && (legacy || InfoChunk.isChunk(chunks))) {
+					metadataStart = chunks.getOffset();
+					metadataEnd = legacy ? channel.size() : chunks.getEndOffset();
+				}
+				// anything after the last complete chunk is dropped
+				if (legacy || chunks.isTruncated()) break;
+				end = chunks.getEndOffset();
+			}
+			if (metadataStart < 0)
+				metadataStart = metadataEnd = end;
+			end = Math.max(end, metadataEnd);
+			if (end - metadataEnd > MAX_TRAILER_LEN) return false;
+
+			// chunks behind the metadata move up behind the new one
+			byte[] info = wav.metadataToByteArray();
+			ByteBuffer tail = ByteBuffer.allocate((int) (metadataStart & 1) + info.length +
+					(int) (end - metadataEnd));
+			tail.position((int) (metadataStart & 1));
+			tail.put(info);
+			channel.position(metadataEnd);
+			readFully(channel, tail);
+			tail.flip();
+
+			while (tail.hasRemaining())
+				channel.write(tail, metadataStart + tail.position());
+			channel.truncate(metadataStart + tail.limit());
+
+			ByteBuffer riffSize = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			riffSize.putInt(0, (int) (metadataStart + tail.limit() - 8));
+			while (riffSize.hasRemaining())
+				channel.write(riffSize, 4 + riffSize.position());
+
+			channel.force(false);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
 
-	private static int readTotalAudioLen(byte[] header) {
-		int b1 = header[40] & 0xff;
-		int b2 = header[41] & 0xff;
-		int b3 = header[42] & 0xff;
-		int b4 = header[43] & 0xff;
-		return (b4 << 24) | (b3 << 16) | (b2 << 8) | b1;
+		return true;
 	}
 
-	private static short readChannels(byte[] header) {
-		return header[22];
+	/**
+	 * @return whether {@code trailer} starts with metadata, in either format
+	 */
+	static boolean startsWithMetadata(byte[] trailer) {
+		return InfoChunk.startsWithChunk(trailer, 0) ||
+				RiffChunkIterator.matches(trailer, 0, LEGACY_METADATA_ID);
 	}
 
-	private static int readSampleRate(byte[] header) {
-		int b1 = header[24] & 0xff;
-		int b2 = header[25] & 0xff;
-		int b3 = header[26] & 0xff;
-		int b4 = header[27] & 0xff;
-		return (b4 << 24) | (b3 << 16) | (b2 << 8) | b1;
-	}
+	private static HashMap<String, String> readLegacyMetadata(byte[] metadataBytes) {
+		HashMap<String, String> metadata = new HashMap<>();
 
-	private static HashMap<String, String> readMetadata(byte[] metadataBytes) {
 		String metadataString = new String(metadataBytes, StandardCharsets.UTF_8);
-		metadataString = metadataString.substring(metadataString.indexOf("id3 ") + "id3 ".length());
 		String[] mdValues = metadataString.split(";");
 
-		HashMap<String, String> metadata = new HashMap<>();
-
 		for (String mdVal : mdValues) {
 			String[] mdKeyVal = mdVal.split(":", 2);
 			if (mdKeyVal.length > 1)
@@ -131,108 +433,135 @@ public class WavFile {
 	}
 
 
-	private byte[] prepareEmptyWavFileHeader() {
-		byte[] tmpHeader = new byte[HEADER_LEN + DATA_HEADER_LEN];
-
-		tmpHeader[0] = 'R';  //RIFF/WAVE header
-		tmpHeader[1] = 'I';
-		tmpHeader[2] = 'F';
-		tmpHeader[3] = 'F';
-
-		tmpHeader[8] = 'W';
-		tmpHeader[9] = 'A';
-		tmpHeader[10] = 'V';
-		tmpHeader[11] = 'E';
-		tmpHeader[12] = 'f';  // 'fmt' chunk
-		tmpHeader[13] = 'm';
-		tmpHeader[14] = 't';
-		tmpHeader[15] = ' ';
-		tmpHeader[16] = 16; // 4 bytes: size of 'fmt' chunk
-		tmpHeader[20] = 1; //format (1 -> PCM)
-
-		tmpHeader[36] = 'd';
-		tmpHeader[37] = 'a';
-		tmpHeader[38] = 't';
-		tmpHeader[39] = 'a';
-
-		return tmpHeader;
-	}
-
 	public boolean setChannels(int channels) {
 		if (channels < 1) return false;
 		this.channels = channels;
-		header[22] = (byte) channels;
-		header[23] = 0;
-		updateBlockAlign();
-		updateBytesPerSecond();
 		return true;
 	}
 
-	public boolean setBitsPerSample(int bitsPerSample) {
-		if (bitsPerSample != 8 && bitsPerSample != 16) return false;
-		this.bitsPerSample = bitsPerSample;
-		header[34] = (byte) bitsPerSample;
-		header[35] = 0;
-		updateBlockAlign();
-		updateBytesPerSecond();
+	public boolean setSampleFormat(SampleFormat sampleFormat) {
+		if (sampleFormat == null) return false;
+		this.sampleFormat = sampleFormat;
 		return true;
 	}
 
 	public boolean setSampleRate(long sampleRate) {
 		if (sampleRate < 1) return false;
 		this.sampleRate = sampleRate;
-		header[24] = (byte) (sampleRate & 0xff);
-		header[25] = (byte) ((sampleRate >> 8) & 0xff);
-		header[26] = (byte) ((sampleRate >> 16) & 0xff);
-		header[27] = (byte) ((sampleRate >> 24) & 0xff);
-		updateBytesPerSecond();
 		return true;
 	}
 
-	private void updateBytesPerSecond() {
-		long bytesPS = getBytesPerSecond();
-		header[28] = (byte) (bytesPS & 0xff);
-		header[29] = (byte) ((bytesPS >> 8) & 0xff);
-		header[30] = (byte) ((bytesPS >> 16) & 0xff);
-		header[31] = (byte) ((bytesPS >> 24) & 0xff);
+	public long getSampleRate() {
+		return sampleRate;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	public SampleFormat getSampleFormat() {
+		return sampleFormat;
 	}
 
-	private void updateBlockAlign() {
-		header[32] = (byte) ((bitsPerSample * channels) / 8);
-		header[33] = 0;
+	public int getBitsPerSample() {
+		return sampleFormat.getBitsPerSample();
 	}
 
+	public long getAudioLength() {
+		return totalAudioLen;
+	}
+
+	/**
+	 * @return where the audio starts in the file this was read from; 44 for files
+	 * written by this app
+	 */
+	long getAudioOffset() {
+		return audioOffset < 0 ? getHeaderLength() : audioOffset;
+	}
+
+	int getBlockAlign() {
+		return sampleFormat.getBytesPerSample() * channels;
+	}
 
 	public long getBytesPerSecond() {
-		return (sampleRate * bitsPerSample * channels) / 8;
+		return sampleRate * getBlockAlign();
+	}
+
+	/**
+	 * Mono and stereo 8 or 16-bit PCM is written with a plain PCM format chunk; wider
+	 * samples, float and more channels need WAVE_FORMAT_EXTENSIBLE to be read correctly.
+	 */
+	boolean isExtensible() {
+		return sampleFormat.isFloat() || sampleFormat.getBitsPerSample() > 16 || channels > 2;
+	}
+
+	int getHeaderLength() {
+		return RIFF_HEADER_LEN + CHUNK_HEADER_LEN +
+				(isExtensible() ? EXTENSIBLE_FORMAT_LEN : FORMAT_LEN) + CHUNK_HEADER_LEN;
 	}
 
 	public byte[] toByteArray() {
-		byte[] meta = metadataToByteArray();
-		byte[] audio = ArrayUtils.addAll(header, data);
+		// odd audio is followed by a pad byte, so the chunks behind it start on an even offset
+		byte[] meta = ArrayUtils.addAll(new byte[(int) (totalAudioLen & 1)],
+				ArrayUtils.addAll(silenceIndex.toChunk(), metadataToByteArray()));
+		setAudioLength(totalAudioLen, meta.length);
+		byte[] audio = ArrayUtils.addAll(getHeader(), data);
 		return ArrayUtils.addAll(audio, meta);
 	}
 
-	private void setTotalDataLen(long totalDataLen) {
-		this.totalDataLen = totalDataLen;
-		header[4] = (byte) (totalDataLen & 0xff);
-		header[5] = (byte) ((totalDataLen >> 8) & 0xff);
-		header[6] = (byte) ((totalDataLen >> 16) & 0xff);
-		header[7] = (byte) ((totalDataLen >> 24) & 0xff);
+	void setAudioLength(long audioLength) {
+		setAudioLength(audioLength, 0);
 	}
 
-	private void setTotalAudioLen(long totalAudioLen) {
-		this.totalAudioLen = totalAudioLen;
-		header[40] = (byte) (totalAudioLen & 0xff);
-		header[41] = (byte) ((totalAudioLen >> 8) & 0xff);
-		header[42] = (byte) ((totalAudioLen >> 16) & 0xff);
-		header[43] = (byte) ((totalAudioLen >> 24) & 0xff);
+	/**
+	 * @param trailerLength length of the chunks after the audio, counted into the RIFF size
+	 */
+	void setAudioLength(long audioLength, long trailerLength) {
+		this.totalAudioLen = audioLength;
+		this.trailerLen = trailerLength;
 	}
 
-	public void appendAudioBytes(byte[] audioBlock) {
-		setTotalAudioLen(totalAudioLen + audioBlock.length);
-		setTotalDataLen(totalDataLen + audioBlock.length);
+	long getTrailerLength() {
+		return trailerLen;
+	}
+
+	/**
+	 * @return the RIFF header, the format chunk and the data chunk header for the current
+	 * format and lengths
+	 */
+	byte[] getHeader() {
+		int formatLen = isExtensible() ? EXTENSIBLE_FORMAT_LEN : FORMAT_LEN;
+		int formatTag = sampleFormat.isFloat() ? WAVE_FORMAT_IEEE_FLOAT : WAVE_FORMAT_PCM;
+
+		ByteBuffer header = ByteBuffer.allocate(getHeaderLength()).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(RIFF_ID);
+		header.putInt((int) (header.capacity() - CHUNK_HEADER_LEN + totalAudioLen + trailerLen));
+		header.put(WAVE_ID);
+
+		header.put(FMT_ID);
+		header.putInt(formatLen);
+		header.putShort((short) (isExtensible() ? WAVE_FORMAT_EXTENSIBLE : formatTag));
+		header.putShort((short) channels);
+		header.putInt((int) sampleRate);
+		header.putInt((int) getBytesPerSecond());
+		header.putShort((short) getBlockAlign());
+		header.putShort((short) sampleFormat.getBitsPerSample());
+		if (isExtensible()) {
+			header.putShort((short) (EXTENSIBLE_FORMAT_LEN - FORMAT_LEN - 2));
+			header.putShort((short) sampleFormat.getBitsPerSample());
+			header.putInt(channels == 1 ? SPEAKER_FRONT_CENTER :
+					channels == 2 ? SPEAKER_FRONT_LEFT_RIGHT : 0);
+			header.putShort((short) formatTag);
+			header.put(SUBFORMAT_GUID_TAIL);
+		}
+
+		header.put(DATA_ID);
+		header.putInt((int) totalAudioLen);
+		return header.array();
+	}
 
+	public void appendAudioBytes(byte[] audioBlock) {
+		totalAudioLen += audioBlock.length;
 		data = ArrayUtils.addAll(data, audioBlock);
 	}
 
@@ -240,19 +569,26 @@ public class WavFile {
 		metadata.put(tag, value);
 	}
 
-	private byte[] metadataToByteArray() {
-		StringBuilder dataBuilder = new StringBuilder();
-
-		dataBuilder.append("id3 ");
-
-		for (Map.Entry<String, String> entry : metadata.entrySet()) {
-			dataBuilder.append(entry.getKey()).append(":").append(entry.getValue()).append(";");
-		}
-
-		return dataBuilder.toString().getBytes();
+	byte[] metadataToByteArray() {
+		return InfoChunk.toChunk(metadata);
 	}
 
 	public String getMetadata(String tag) {
 		return metadata.getOrDefault(tag, null);
 	}
+
+	/**
+	 * @return the silence trimmed while recording; empty for untrimmed files
+	 */
+	public SilenceIndex getSilenceIndex() {
+		return silenceIndex;
+	}
+
+	/**
+	 * @return the duration of the recording in milliseconds, including trimmed silence
+	 */
+	public long getOriginalDurationMillis() {
+		long frames = totalAudioLen / getBlockAlign() + silenceIndex.getTotalLength();
+		return frames * 1000 / sampleRate;
+	}
 }
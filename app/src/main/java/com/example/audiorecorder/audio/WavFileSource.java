@@ -0,0 +1,98 @@
+package com.example.audiorecorder.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replays the PCM payload of a recording as fast as it is read.
+ */
+public class WavFileSource implements IAudioSource {
+
+	private final FileChannel channel;
+	private final int sampleRate;
+	private final int channels;
+	private final SampleFormat sampleFormat;
+	private final int blockAlign;
+	private final long audioStart;
+	private final long audioEnd;
+
+	private long position;
+
+	public WavFileSource(File file) throws IOException {
+		WavFile wavFile = WavFile.probe(file);
+		if (wavFile == null)
+			throw new IOException("Not a WAV file: " + file);
+
+		sampleRate = (int) wavFile.getSampleRate();
+		channels = wavFile.getChannels();
+		sampleFormat = wavFile.getSampleFormat();
+		blockAlign = wavFile.getBlockAlign();
+		audioStart = wavFile.getAudioOffset();
+		audioEnd = audioStart + wavFile.getAudioLength();
+		position = audioStart;
+
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+	}
+
+	@Override
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	@Override
+	public int getChannels() {
+		return channels;
+	}
+
+	@Override
+	public SampleFormat getSampleFormat() {
+		return sampleFormat;
+	}
+
+	@Override
+	public void start() {
+		position = audioStart;
+	}
+
+	@Override
+	public int read(ByteBuffer buffer) {
+		buffer.clear();
+		if (position >= audioEnd)
+			return END_OF_STREAM;
+
+		// whole frames only; the audio region itself is already cut to whole frames
+		int capacity = buffer.capacity() - buffer.capacity() % blockAlign;
+		buffer.limit((int) Math.min(audioEnd - position, capacity));
+
+		try {
+			while (buffer.hasRemaining()) {
+				int read = channel.read(buffer, position + buffer.position());
+				if (read < 0) break;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return END_OF_STREAM;
+		}
+
+		buffer.flip();
+		position += buffer.limit();
+
+		return buffer.limit() > 0 ? buffer.limit() : END_OF_STREAM;
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	@Override
+	public void release() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
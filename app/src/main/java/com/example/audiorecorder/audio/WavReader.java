@@ -0,0 +1,165 @@
+package com.example.audiorecorder.audio;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Random access to the samples of a WAV file through a read-only memory mapping of its data
+ * chunk, so seeking costs nothing and no audio is copied onto the heap. Samples are
+ * interleaved, frame {@code f} of channel {@code c} is at index {@code f * channels + c}.
+ * The sample accessors are for 16-bit files; files in other formats are read through
+ * {@link #getData()}.
+ * <p>
+ * {@link #close()} closes the file and drops the mapping; any access afterwards, also
+ * through buffers handed out earlier by this reader, must not happen. The pages themselves
+ * are returned to the system once the buffer is collected.
+ */
+public class WavReader implements Closeable {
+
+	private final WavFile wav;
+	private final FileChannel channel;
+	private final long frameCount;
+
+	private ByteBuffer data;
+	// null unless the file is 16-bit
+	private ShortBuffer samples;
+
+	private WavReader(WavFile wav, FileChannel channel, MappedByteBuffer data) {
+		this.wav = wav;
+		this.channel = channel;
+		this.frameCount = data.capacity() / wav.getBlockAlign();
+		this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+		if (wav.getSampleFormat() == SampleFormat.PCM_16)
+			this.samples = this.data.asShortBuffer();
+	}
+
+	public static WavReader open(File file) throws IOException {
+		WavFile wav = WavFile.probe(file);
+		if (wav == null)
+			throw new IOException("Not a WAV file: " + file);
+
+		long dataLen = wav.getAudioLength() - wav.getAudioLength() % wav.getBlockAlign();
+		if (dataLen > Integer.MAX_VALUE)
+			throw new IOException("Audio data too large to map: " + file);
+
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY,
+					wav.getAudioOffset(), dataLen);
+			return new WavReader(wav, channel, data);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Format and metadata of the file, without audio bytes.
+	 */
+	public WavFile getWavFile() {
+		return wav;
+	}
+
+	public int getChannels() {
+		return wav.getChannels();
+	}
+
+	public long getSampleRate() {
+		return wav.getSampleRate();
+	}
+
+	public SampleFormat getSampleFormat() {
+		return wav.getSampleFormat();
+	}
+
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	public long getDurationMillis() {
+		return frameCount * 1000 / wav.getSampleRate();
+	}
+
+	/**
+	 * @return the frame at {@code millis} into the stored audio, clamped to the recording
+	 */
+	public long frameAt(long millis) {
+		return Math.max(0, Math.min(frameCount, millis * wav.getSampleRate() / 1000));
+	}
+
+	public short getSample(long frame, int channel) {
+		return mapped().get((int) (frame * wav.getChannels() + channel));
+	}
+
+	/**
+	 * @return a read-only view of all samples, positioned at the start
+	 */
+	public ShortBuffer getSamples() {
+		return mapped().asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return a read-only view of the samples of frames {@code [fromFrame, toFrame)}, clamped
+	 * to the recording
+	 */
+	public ShortBuffer getFrames(long fromFrame, long toFrame) {
+		long from = Math.max(0, Math.min(frameCount, fromFrame));
+		long to = Math.max(from, Math.min(frameCount, toFrame));
+
+		ShortBuffer view = mapped().asReadOnlyBuffer();
+		view.limit((int) (to * wav.getChannels()));
+		view.position((int) (from * wav.getChannels()));
+		return view.slice();
+	}
+
+	/**
+	 * @return a read-only view of the samples between {@code fromMillis} and {@code toMillis}
+	 */
+	public ShortBuffer getRange(long fromMillis, long toMillis) {
+		return getFrames(frameAt(fromMillis), frameAt(toMillis));
+	}
+
+	/**
+	 * Copies up to {@code frames} frames starting at {@code fromFrame} into {@code dst}.
+	 *
+	 * @return the number of frames copied
+	 */
+	public int read(long fromFrame, short[] dst, int offset, int frames) {
+		ShortBuffer range = getFrames(fromFrame, fromFrame + frames);
+		int copied = range.remaining() / wav.getChannels();
+		range.get(dst, offset, copied * wav.getChannels());
+		return copied;
+	}
+
+	/**
+	 * @return a read-only little-endian view of the audio bytes in any sample format,
+	 * positioned at the start
+	 */
+	public ByteBuffer getData() {
+		if (data == null)
+			throw new IllegalStateException("Reader is closed");
+		return data.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private ShortBuffer mapped() {
+		if (data == null)
+			throw new IllegalStateException("Reader is closed");
+		if (samples == null)
+			throw new UnsupportedOperationException("Not 16-bit audio");
+		return samples;
+	}
+
+	@Override
+	public void close() throws IOException {
+		data = null;
+		samples = null;
+		channel.close();
+	}
+}
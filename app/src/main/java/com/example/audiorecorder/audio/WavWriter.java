@@ -0,0 +1,212 @@
+package com.example.audiorecorder.audio;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams PCM blocks to disk; RIFF/data sizes are patched into the header on close. Trimmed
+ * silence reported through {@link #skipAudioBytes(long)} is kept in a {@link SilenceIndex}
+ * chunk after the audio.
+ */
+public class WavWriter implements IAudioSink, Closeable {
+
+	private final WavFile wavFile;
+	private final FileChannel channel;
+	private final SilenceIndex silenceIndex;
+
+	private long audioLen;
+	private long trailerLen = 0;
+
+	public WavWriter(File file, long sampleRate, int channels) throws IOException {
+		this(file, sampleRate, channels, SampleFormat.PCM_16);
+	}
+
+	public WavWriter(File file, long sampleRate, int channels, SampleFormat sampleFormat)
+			throws IOException {
+		wavFile = new WavFile(sampleRate, channels, sampleFormat);
+		silenceIndex = new SilenceIndex();
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		audioLen = 0;
+
+		writeFully(ByteBuffer.wrap(wavFile.getHeader()));
+	}
+
+	private WavWriter(WavFile wavFile, FileChannel channel, long audioLen,
+					  SilenceIndex silenceIndex) {
+		this.wavFile = wavFile;
+		this.channel = channel;
+		this.audioLen = audioLen;
+		this.silenceIndex = silenceIndex;
+	}
+
+	/**
+	 * Reopens an unfinished file for appending, e.g. a draft left behind by a killed
+	 * process. The audio length is rebuilt from the file length and the header repaired.
+	 */
+	public static WavWriter recover(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+
+		try {
+			WavFile wavFile = WavFile.readHeader(channel);
+			if (wavFile == null)
+				throw new IOException("Not a WAV file: " + file);
+			// the header is rewritten in place, it has to keep its length
+			if (wavFile.getAudioOffset() != wavFile.getHeaderLength())
+				throw new IOException("Unsupported WAV header layout: " + file);
+
+			long audioStart = wavFile.getAudioOffset();
+			long audioLen = channel.size() - audioStart;
+			SilenceIndex silenceIndex = new SilenceIndex();
+
+			// a flushed or finished file carries a trailer after the declared audio; keep its
+			// silence index and drop the rest. Audio appended later overwrites the trailer from
+			// the front: once past its end all of it is audio, before that the file keeps its
+			// flushed length and the rest of the trailer is not
+			long declaredLen = wavFile.getAudioLength();
+			long flushedLen = declaredLen + wavFile.getTrailerLength();
+			if (declaredLen < audioLen) {
+				byte[] trailer = readTrailer(channel, audioStart + declaredLen + (declaredLen & 1));
+				if (SilenceIndex.startsWithChunk(trailer)) {
+					silenceIndex = SilenceIndex.fromTrailer(trailer);
+					audioLen = declaredLen;
+				} else if (WavFile.startsWithMetadata(trailer) || audioLen <= flushedLen) {
+					audioLen = declaredLen;
+				}
+			}
+
+			audioLen -= audioLen % wavFile.getBlockAlign();
+			channel.truncate(audioStart + audioLen);
+			channel.position(audioStart + audioLen);
+
+			WavWriter writer = new WavWriter(wavFile, channel, audioLen, silenceIndex);
+			writer.flush();
+			return writer;
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private static byte[] readTrailer(FileChannel channel, long position) throws IOException {
+		long trailerLen = Math.min(channel.size() - position, WavFile.MAX_TRAILER_LEN);
+		ByteBuffer trailer = ByteBuffer.allocate((int) trailerLen);
+		while (trailer.hasRemaining() && channel.read(trailer, position + trailer.position()) > 0)
+			;
+		return trailer.array();
+	}
+
+	public void appendAudioBytes(byte[] audioBlock) throws IOException {
+		appendAudioBytes(ByteBuffer.wrap(audioBlock));
+	}
+
+	@Override
+	public void appendAudioBytes(ByteBuffer audioBlock) throws IOException {
+		audioLen += writeFully(audioBlock);
+	}
+
+	public void appendAudioBytes(FileChannel source, long position, long count)
+			throws IOException {
+		long transferred = 0;
+		while (transferred < count) {
+			long n = source.transferTo(position + transferred, count - transferred, channel);
+			if (n <= 0) break;
+			transferred += n;
+		}
+		audioLen += transferred;
+	}
+
+	@Override
+	public void skipAudioBytes(long byteCount) {
+		int blockAlign = wavFile.getBlockAlign();
+		silenceIndex.add(audioLen / blockAlign, byteCount / blockAlign);
+	}
+
+	public void insertMetadataTag(String tag, String value) {
+		wavFile.insertMetadataTag(tag, value);
+	}
+
+	public long getAudioLength() {
+		return audioLen;
+	}
+
+	public long getSampleRate() {
+		return wavFile.getSampleRate();
+	}
+
+	public int getChannels() {
+		return wavFile.getChannels();
+	}
+
+	public SampleFormat getSampleFormat() {
+		return wavFile.getSampleFormat();
+	}
+
+	private int writeFully(ByteBuffer buffer) throws IOException {
+		int written = 0;
+		while (buffer.hasRemaining())
+			written += channel.write(buffer);
+		return written;
+	}
+
+	private long writeAt(byte[] bytes, long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining())
+			channel.write(buffer, position + buffer.position());
+		return bytes.length;
+	}
+
+	// written behind the audio without moving the append position; later appends overwrite it.
+	// Odd audio is followed by the RIFF pad byte, which counts as part of the trailer
+	private void writeTrailer(boolean withMetadata) throws IOException {
+		long position = wavFile.getAudioOffset() + audioLen;
+		if ((audioLen & 1) != 0)
+			position += writeAt(new byte[1], position);
+		position += writeAt(silenceIndex.toChunk(), position);
+		if (withMetadata)
+			position += writeAt(wavFile.metadataToByteArray(), position);
+		channel.truncate(position);
+		trailerLen = position - wavFile.getAudioOffset() - audioLen;
+	}
+
+	private void writeHeader() throws IOException {
+		wavFile.setAudioLength(audioLen, trailerLen);
+		writeAt(wavFile.getHeader(), 0);
+	}
+
+	/**
+	 * Makes everything written so far a valid, durable WAV file without finishing it.
+	 */
+	public void flush() throws IOException {
+		writeTrailer(false);
+		writeHeader();
+		channel.force(false);
+	}
+
+	/**
+	 * Flushes and closes the file without metadata, so it can be picked up again
+	 * with {@link #recover(File)}.
+	 */
+	public void closeUnfinished() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			writeTrailer(true);
+			writeHeader();
+		} finally {
+			channel.close();
+		}
+	}
+}
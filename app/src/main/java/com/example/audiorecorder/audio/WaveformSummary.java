@@ -0,0 +1,159 @@
+package com.example.audiorecorder.audio;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Min/max peak summary of a recording in a fixed number of equally long buckets, small enough
+ * to cache and to draw as a thumbnail. Every bucket spans zero, empty buckets are flat. Peaks
+ * are in 16-bit sample units whatever the format of the recording.
+ */
+public class WaveformSummary {
+
+	public static final int DEFAULT_BUCKETS = 256;
+
+	private final short[] min;
+	private final short[] max;
+
+	WaveformSummary(short[] min, short[] max) {
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * Scans the samples of {@code wavFile} through a {@link WavReader}; the audio is mapped,
+	 * not loaded, so memory use does not depend on the length of the recording.
+	 *
+	 * @return the summary, or {@code null} if the file is not a readable WAV file
+	 */
+	public static WaveformSummary compute(File wavFile, int buckets) {
+		try (WavReader reader = WavReader.open(wavFile)) {
+			return compute(reader, buckets);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	static WaveformSummary compute(WavReader reader, int buckets) {
+		WaveformSummary waveform = new WaveformSummary(new short[buckets], new short[buckets]);
+
+		SampleFormat format = reader.getSampleFormat();
+		ShortBuffer samples = format == SampleFormat.PCM_16 ? reader.getSamples() : null;
+		ByteBuffer data = reader.getData();
+		int channels = reader.getChannels();
+		long totalFrames = reader.getFrameCount();
+
+		for (int bucket = 0; bucket < buckets; bucket++) {
+			int from = (int) (bucketBoundary(bucket, buckets, totalFrames) * channels);
+			int to = (int) (bucketBoundary(bucket + 1, buckets, totalFrames) * channels);
+
+			// one loop per format, the samples are scaled once per bucket
+			switch (format) {
+				case PCM_8:
+					waveform.scan8(bucket, data, from, to);
+					break;
+				case PCM_24:
+					waveform.scan24(bucket, data, from, to);
+					break;
+				case FLOAT_32:
+					waveform.scanFloat(bucket, data, from, to);
+					break;
+				case PCM_16:
+				default:
+					waveform.scan16(bucket, samples, from, to);
+					break;
+			}
+		}
+
+		return waveform;
+	}
+
+	private void scan16(int bucket, ShortBuffer samples, int from, int to) {
+		short bucketMin = 0, bucketMax = 0;
+		for (int i = from; i < to; i++) {
+			short sample = samples.get(i);
+			if (sample < bucketMin) bucketMin = sample;
+			if (sample > bucketMax) bucketMax = sample;
+		}
+		min[bucket] = bucketMin;
+		max[bucket] = bucketMax;
+	}
+
+	// unsigned, centred on 128
+	private void scan8(int bucket, ByteBuffer data, int from, int to) {
+		int bucketMin = 0, bucketMax = 0;
+		for (int i = from; i < to; i++) {
+			int sample = (data.get(i) & 0xff) - 128;
+			if (sample < bucketMin) bucketMin = sample;
+			if (sample > bucketMax) bucketMax = sample;
+		}
+		min[bucket] = (short) (bucketMin << 8);
+		max[bucket] = (short) Math.min(Short.MAX_VALUE, bucketMax << 8);
+	}
+
+	private void scan24(int bucket, ByteBuffer data, int from, int to) {
+		int bucketMin = 0, bucketMax = 0;
+		for (int i = from * 3; i < to * 3; i += 3) {
+			int sample = (data.get(i) & 0xff) | (data.get(i + 1) & 0xff) << 8 |
+					data.get(i + 2) << 16;
+			if (sample < bucketMin) bucketMin = sample;
+			if (sample > bucketMax) bucketMax = sample;
+		}
+		min[bucket] = (short) (bucketMin >> 8);
+		max[bucket] = (short) (bucketMax >> 8);
+	}
+
+	private void scanFloat(int bucket, ByteBuffer data, int from, int to) {
+		float bucketMin = 0, bucketMax = 0;
+		for (int i = from * 4; i < to * 4; i += 4) {
+			float sample = data.getFloat(i);
+			if (sample < bucketMin) bucketMin = sample;
+			if (sample > bucketMax) bucketMax = sample;
+		}
+		min[bucket] = (short) Math.max(Short.MIN_VALUE, bucketMin * Short.MAX_VALUE);
+		max[bucket] = (short) Math.min(Short.MAX_VALUE, bucketMax * Short.MAX_VALUE);
+	}
+
+	private static long bucketBoundary(int bucket, int buckets, long totalFrames) {
+		return bucket * totalFrames / buckets;
+	}
+
+	public static WaveformSummary readFrom(DataInput in) throws IOException {
+		int buckets = in.readInt();
+		if (buckets < 0 || buckets > 64 * 1024)
+			throw new IOException("Invalid waveform bucket count: " + buckets);
+
+		short[] min = new short[buckets];
+		short[] max = new short[buckets];
+		for (int i = 0; i < buckets; i++) {
+			min[i] = in.readShort();
+			max[i] = in.readShort();
+		}
+		return new WaveformSummary(min, max);
+	}
+
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeInt(min.length);
+		for (int i = 0; i < min.length; i++) {
+			out.writeShort(min[i]);
+			out.writeShort(max[i]);
+		}
+	}
+
+	public int getBucketCount() {
+		return min.length;
+	}
+
+	public short getMin(int bucket) {
+		return min[bucket];
+	}
+
+	public short getMax(int bucket) {
+		return max[bucket];
+	}
+}
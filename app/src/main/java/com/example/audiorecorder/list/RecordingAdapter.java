@@ -14,6 +14,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.audiorecorder.R;
 
 import java.util.ArrayList;
+import java.util.Collection;
 
 public class RecordingAdapter extends RecyclerView.Adapter<RecordingAdapter.RecordingViewHolder> {
 
@@ -22,6 +23,7 @@ public class RecordingAdapter extends RecyclerView.Adapter<RecordingAdapter.Reco
 	boolean isPlayButtonEnabled = true;
 	OnCheckedChangeListener checkedListener;
 	OnPlayClickedListener clickedListener;
+	WaveformLoader waveformLoader;
 
 	public interface OnCheckedChangeListener {
 		void onCheckedChange(int position, boolean isChecked);
@@ -40,10 +42,52 @@ public class RecordingAdapter extends RecyclerView.Adapter<RecordingAdapter.Reco
 		this.clickedListener = listener;
 	}
 
+	public void setWaveformLoader(WaveformLoader waveformLoader) {
+		this.waveformLoader = waveformLoader;
+	}
+
+	/**
+	 * Removes the items at {@code positions} in a single pass and notifies every contiguous
+	 * run of removed rows with one range event. Runs are reported from the bottom up, so the
+	 * positions of the runs still to come stay valid.
+	 *
+	 * @return the removed items, in list order
+	 */
+	public ArrayList<RecordingItem> removePositions(Collection<Integer> positions) {
+		int size = recordingItems.size();
+		boolean[] removed = new boolean[size];
+		for (int position : positions)
+			if (position >= 0 && position < size) removed[position] = true;
+
+		ArrayList<RecordingItem> removedItems = new ArrayList<>();
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			RecordingItem item = recordingItems.get(i);
+			if (removed[i]) removedItems.add(item);
+			else recordingItems.set(kept++, item);
+		}
+		recordingItems.subList(kept, size).clear();
+
+		for (int end = size; end > 0; ) {
+			if (!removed[end - 1]) {
+				end--;
+				continue;
+			}
+			int start = end - 1;
+			while (start > 0 && removed[start - 1])
+				start--;
+			notifyItemRangeRemoved(start, end - start);
+			end = start;
+		}
+
+		return removedItems;
+	}
+
 	public static class RecordingViewHolder extends RecyclerView.ViewHolder {
 		public ImageView imageView;
 		public TextView tvNameSurname, tvTitle, tvComment, tvDate, tvTime;
 		public CheckBox checkBox;
+		public WaveformView waveformView;
 
 		public RecordingViewHolder(@NonNull View itemView, OnCheckedChangeListener listener,
 		                           OnPlayClickedListener clickedListener) {
@@ -55,6 +99,7 @@ public class RecordingAdapter extends RecyclerView.Adapter<RecordingAdapter.Reco
 			tvDate = itemView.findViewById(R.id.textViewDate);
 			tvTime = itemView.findViewById(R.id.textViewTime);
 			checkBox = itemView.findViewById(R.id.checkBox);
+			waveformView = itemView.findViewById(R.id.waveformView);
 
 			checkBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
 				if (listener != null) {
@@ -103,6 +148,11 @@ public class RecordingAdapter extends RecyclerView.Adapter<RecordingAdapter.Reco
 		holder.tvDate.setText(recordingItem.getDate());
 		holder.tvTime.setText(recordingItem.getTime());
 
+		// rows are bound as they scroll in, so only visible recordings get scanned
+		holder.waveformView.setWaveform(recordingItem.getWaveform());
+		if (recordingItem.getWaveform() == null && waveformLoader != null)
+			waveformLoader.request(recordingItem);
+
 		holder.checkBox.setChecked(false);
 		if (isCheckboxVisible)
 			holder.checkBox.setVisibility(View.VISIBLE);
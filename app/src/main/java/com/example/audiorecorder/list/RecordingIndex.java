@@ -0,0 +1,167 @@
+package com.example.audiorecorder.list;
+
+import com.example.audiorecorder.audio.WavFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+/**
+ * On-disk cache of recording metadata keyed by path, length and modification time, so only
+ * new or changed recordings have to be parsed when the list is opened.
+ */
+public class RecordingIndex {
+
+	private static final String INDEX_FILE_NAME = ".index";
+	private static final int MAGIC = 0x52494458; // "RIDX"
+	private static final int VERSION = 1;
+
+	private final File indexFile;
+	private final HashMap<String, Entry> entries = new HashMap<>();
+	private boolean dirty = false;
+
+	private static class Entry {
+		final long length;
+		final long lastModified;
+		final HashMap<String, String> metadata;
+
+		Entry(long length, long lastModified, HashMap<String, String> metadata) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.metadata = metadata;
+		}
+
+		boolean matches(File file) {
+			return length == file.length() && lastModified == file.lastModified();
+		}
+	}
+
+	public RecordingIndex(File recordingsDir) {
+		indexFile = new File(recordingsDir, INDEX_FILE_NAME);
+		load();
+	}
+
+	public HashMap<String, String> getMetadata(File recording) {
+		Entry entry = entries.get(recording.getPath());
+		if (entry != null && entry.matches(recording))
+			return entry.metadata;
+
+		WavFile wavFile = WavFile.probe(recording);
+		if (wavFile == null) {
+			if (entries.remove(recording.getPath()) != null) dirty = true;
+			return null;
+		}
+
+		HashMap<String, String> metadata = new HashMap<>();
+		for (String tag : WavFile.METADATA_TAGS)
+			metadata.put(tag, wavFile.getMetadata(tag));
+
+		entries.put(recording.getPath(),
+				new Entry(recording.length(), recording.lastModified(), metadata));
+		dirty = true;
+
+		return metadata;
+	}
+
+	/**
+	 * Drops the entry of {@code recording}, for changes that may keep its length and
+	 * modification time, e.g. a metadata edit of the same size within the file system's
+	 * timestamp granularity.
+	 */
+	public void invalidate(File recording) {
+		if (entries.remove(recording.getPath()) != null) dirty = true;
+	}
+
+	public void retainAll(Collection<File> recordings) {
+		HashSet<String> paths = new HashSet<>();
+		for (File recording : recordings)
+			paths.add(recording.getPath());
+
+		for (Iterator<String> iter = entries.keySet().iterator(); iter.hasNext(); ) {
+			if (!paths.contains(iter.next())) {
+				iter.remove();
+				dirty = true;
+			}
+		}
+	}
+
+	private void load() {
+		if (!indexFile.exists()) return;
+
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				dirty = true;
+				return;
+			}
+
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String path = in.readUTF();
+				long length = in.readLong();
+				long lastModified = in.readLong();
+
+				int tagCount = in.readInt();
+				HashMap<String, String> metadata = new HashMap<>();
+				for (int j = 0; j < tagCount; j++) {
+					String tag = in.readUTF();
+					metadata.put(tag, in.readBoolean() ? in.readUTF() : null);
+				}
+
+				entries.put(path, new Entry(length, lastModified, metadata));
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			entries.clear();
+			dirty = true;
+		}
+	}
+
+	public void save() {
+		if (!dirty) return;
+
+		File tmpFile = new File(indexFile.getPath() + ".tmp");
+
+		try {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(entries.size());
+
+				for (HashMap.Entry<String, Entry> item : entries.entrySet()) {
+					Entry entry = item.getValue();
+					out.writeUTF(item.getKey());
+					out.writeLong(entry.length);
+					out.writeLong(entry.lastModified);
+
+					out.writeInt(entry.metadata.size());
+					for (HashMap.Entry<String, String> tag : entry.metadata.entrySet()) {
+						out.writeUTF(tag.getKey());
+						out.writeBoolean(tag.getValue() != null);
+						if (tag.getValue() != null)
+							out.writeUTF(tag.getValue());
+					}
+				}
+			}
+
+			Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			dirty = false;
+		} catch (IOException e) {
+			e.printStackTrace();
+			tmpFile.delete();
+		}
+	}
+}
@@ -1,11 +1,14 @@
 package com.example.audiorecorder.list;
 
+import com.example.audiorecorder.audio.WaveformSummary;
+
 import java.net.URI;
 
 public class RecordingItem {
 	int imageResource;
 	String nameSurname, date, time, title, comment;
 	URI wavFilePath;
+	WaveformSummary waveform;
 
 
 	public RecordingItem(int imageResource, String nameSurname, String date, String time,
@@ -47,8 +50,24 @@ public class RecordingItem {
 		return wavFilePath;
 	}
 
+	public WaveformSummary getWaveform() {
+		return waveform;
+	}
+
 	public void setImageResource(int imageResource) {
 		this.imageResource = imageResource;
 	}
 
+	public void setTitle(String title) {
+		this.title = title;
+	}
+
+	public void setComment(String comment) {
+		this.comment = comment;
+	}
+
+	public void setWaveform(WaveformSummary waveform) {
+		this.waveform = waveform;
+	}
+
 }
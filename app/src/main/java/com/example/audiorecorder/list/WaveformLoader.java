@@ -0,0 +1,161 @@
+package com.example.audiorecorder.list;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.audiorecorder.audio.WaveformSummary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads waveform thumbnails for list rows on a background pool. Summaries are cached in a
+ * sidecar file per recording, keyed by its length and modification time like
+ * {@link RecordingIndex}, so each recording is only scanned once.
+ */
+public class WaveformLoader {
+
+	private static final String CACHE_DIR_NAME = ".waveforms";
+	private static final int MAGIC = 0x5746524d; // "WFRM"
+	private static final int VERSION = 1;
+
+	public interface OnWaveformLoadedListener {
+		void onWaveformLoaded(RecordingItem item);
+	}
+
+	private final File cacheDir;
+	private final ExecutorService pool;
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+	private final OnWaveformLoadedListener listener;
+
+	// touched on the main thread only
+	private final HashSet<RecordingItem> pending = new HashSet<>();
+
+	public WaveformLoader(File recordingsDir, OnWaveformLoadedListener listener) {
+		this.cacheDir = new File(recordingsDir, CACHE_DIR_NAME);
+		this.listener = listener;
+
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		pool = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "waveform-loader");
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+	}
+
+	/**
+	 * Schedules loading the thumbnail of {@code item} unless it is loaded or on its way.
+	 * Must be called on the main thread; the listener is called there too.
+	 */
+	public void request(RecordingItem item) {
+		if (item.getWaveform() != null || !pending.add(item)) return;
+
+		File recording = new File(item.getWavFilePath());
+		pool.execute(() -> {
+			WaveformSummary waveform = load(recording);
+
+			mainHandler.post(() -> {
+				pending.remove(item);
+				if (waveform == null || pool.isShutdown()) return;
+
+				item.setWaveform(waveform);
+				listener.onWaveformLoaded(item);
+			});
+		});
+	}
+
+	/**
+	 * Drops the cached thumbnail, e.g. after the recording was deleted.
+	 */
+	public void evict(File recording) {
+		sidecarOf(recording).delete();
+	}
+
+	/**
+	 * Keeps the cached thumbnail valid across a change that left the audio alone but moved
+	 * the recording's length and modification time, e.g. a metadata edit.
+	 *
+	 * @param length       the length of the recording before the change
+	 * @param lastModified its modification time before the change
+	 */
+	public void restamp(File recording, long length, long lastModified) {
+		File sidecar = sidecarOf(recording);
+		WaveformSummary waveform = readSidecar(sidecar, length, lastModified);
+		if (waveform != null)
+			writeSidecar(sidecar, recording, waveform);
+	}
+
+	public void shutdown() {
+		pool.shutdownNow();
+		mainHandler.removeCallbacksAndMessages(null);
+	}
+
+	private File sidecarOf(File recording) {
+		return new File(cacheDir, recording.getName() + ".peaks");
+	}
+
+	private WaveformSummary load(File recording) {
+		File sidecar = sidecarOf(recording);
+
+		WaveformSummary cached = readSidecar(sidecar, recording.length(),
+				recording.lastModified());
+		if (cached != null) return cached;
+
+		WaveformSummary waveform = WaveformSummary.compute(recording,
+				WaveformSummary.DEFAULT_BUCKETS);
+		if (waveform != null)
+			writeSidecar(sidecar, recording, waveform);
+
+		return waveform;
+	}
+
+	private static WaveformSummary readSidecar(File sidecar, long length, long lastModified) {
+		if (!sidecar.exists()) return null;
+
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(sidecar)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+			if (in.readLong() != length || in.readLong() != lastModified) return null;
+
+			return WaveformSummary.readFrom(in);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private void writeSidecar(File sidecar, File recording, WaveformSummary waveform) {
+		if (!cacheDir.exists() && !cacheDir.mkdirs()) return;
+
+		// unique per worker, so concurrent writers never share a temporary file
+		File tmpFile = new File(sidecar.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+
+		try {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(recording.length());
+				out.writeLong(recording.lastModified());
+				waveform.writeTo(out);
+			}
+
+			Files.move(tmpFile.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			e.printStackTrace();
+			tmpFile.delete();
+		}
+	}
+}
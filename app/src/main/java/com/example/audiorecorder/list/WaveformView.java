@@ -0,0 +1,88 @@
+package com.example.audiorecorder.list;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+import com.example.audiorecorder.audio.WaveformSummary;
+
+/**
+ * Draws a {@link WaveformSummary} as one vertical min/max line per bucket. The line
+ * coordinates are rebuilt only when the summary or the size changes, not on every draw.
+ */
+public class WaveformView extends View {
+
+	private final Paint paint = new Paint();
+
+	private WaveformSummary waveform;
+	private float[] lines = new float[0];
+	private int lineCount = 0;
+
+	public WaveformView(Context context) {
+		this(context, null);
+	}
+
+	public WaveformView(Context context, @Nullable AttributeSet attrs) {
+		super(context, attrs);
+		paint.setColor(Color.DKGRAY);
+		paint.setStrokeWidth(1);
+	}
+
+	public void setWaveform(WaveformSummary waveform) {
+		if (this.waveform == waveform) return;
+		this.waveform = waveform;
+		rebuildLines();
+		invalidate();
+	}
+
+	public void setColor(int color) {
+		paint.setColor(color);
+		invalidate();
+	}
+
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		rebuildLines();
+	}
+
+	private void rebuildLines() {
+		int width = getWidth() - getPaddingLeft() - getPaddingRight();
+		int height = getHeight() - getPaddingTop() - getPaddingBottom();
+		lineCount = 0;
+		if (waveform == null || width <= 0 || height <= 0) return;
+
+		int buckets = waveform.getBucketCount();
+		if (lines.length < buckets * 4)
+			lines = new float[buckets * 4];
+
+		float step = (float) width / buckets;
+		float centre = getPaddingTop() + height / 2f;
+		float scale = height / 2f / Short.MAX_VALUE;
+		paint.setStrokeWidth(Math.max(1, step * 0.6f));
+
+		for (int i = 0; i < buckets; i++) {
+			float x = getPaddingLeft() + (i + 0.5f) * step;
+			int offset = i * 4;
+			lines[offset] = x;
+			lines[offset + 1] = centre - waveform.getMax(i) * scale;
+			lines[offset + 2] = x;
+			// keep silent stretches visible as a thin centre line
+			lines[offset + 3] = Math.max(centre - waveform.getMin(i) * scale,
+					lines[offset + 1] + 1);
+		}
+		lineCount = buckets;
+	}
+
+	@Override
+	protected void onDraw(Canvas canvas) {
+		super.onDraw(canvas);
+		if (lineCount > 0)
+			canvas.drawLines(lines, 0, lineCount * 4, paint);
+	}
+}
@@ -8,15 +8,34 @@ import java.net.URI;
 import java.util.ArrayList;
 
 public class AppUtils {
-	public static void writeFileOnInternalStorage(Context context, String fileName, byte[] data) {
+	public static File getRecordingsDir(Context context) {
 		File dir = new File(context.getExternalFilesDir(null), "recordings");
 
 		if (!dir.exists()) {
 			dir.mkdirs();
 		}
 
+		return dir;
+	}
+
+	public static File getExportsDir(Context context) {
+		File dir = new File(context.getExternalFilesDir(null), "exports");
+
+		if (!dir.exists()) {
+			dir.mkdirs();
+		}
+
+		return dir;
+	}
+
+	// kept next to the recordings directory so that saving is a rename on the same volume
+	public static File getDraftFile(Context context) {
+		return new File(context.getExternalFilesDir(null), "draft.wav");
+	}
+
+	public static void writeFileOnInternalStorage(Context context, String fileName, byte[] data) {
 		FileOutputStream fOut;
-		File file = new File(dir, fileName);
+		File file = new File(getRecordingsDir(context), fileName);
 
 		try {
 			fOut = new FileOutputStream(file);
@@ -28,8 +47,7 @@ public class AppUtils {
 	}
 
 	public static ArrayList<File> listRecordingFiles(Context context) {
-		File dir = new File(context.getExternalFilesDir(null), "recordings");
-		File[] files = dir.listFiles();
+		File[] files = getRecordingsDir(context).listFiles();
 		ArrayList<File> recordings = new ArrayList<>();
 
 		if (files != null) {
@@ -0,0 +1,256 @@
+package com.example.audiorecorder.audio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class AdpcmWavWriterTest {
+
+	private static final int SAMPLE_RATE = 44100;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static short[] tone(int frames, int channels) {
+		short[] samples = new short[frames * channels];
+		for (int i = 0; i < frames; i++)
+			for (int c = 0; c < channels; c++)
+				samples[i * channels + c] = (short) (Math.sin(2 * Math.PI * (440 + 220 * c) * i /
+						SAMPLE_RATE) * 12_000);
+		return samples;
+	}
+
+	private static ByteBuffer toBytes(short[] samples) {
+		ByteBuffer bytes = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+		for (short sample : samples)
+			bytes.putShort(sample);
+		bytes.flip();
+		return bytes;
+	}
+
+	// decodes every block of an encoded file, checking the header on the way
+	private static short[] decode(File file, int channels, int frames) throws IOException {
+		ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath()))
+				.order(ByteOrder.LITTLE_ENDIAN);
+
+		assertEquals(0x11, bytes.getShort(20));
+		assertEquals(channels, bytes.getShort(22));
+		assertEquals(SAMPLE_RATE, bytes.getInt(24));
+		int blockAlign = bytes.getShort(32);
+		int samplesPerBlock = bytes.getShort(38);
+		assertEquals(frames, bytes.getInt(48));
+		int dataLen = bytes.getInt(56);
+		assertEquals(bytes.capacity(), 60 + dataLen);
+		assertEquals(bytes.capacity() - 8, bytes.getInt(4));
+		assertEquals(0, dataLen % blockAlign);
+
+		short[] block = new short[samplesPerBlock * channels];
+		short[] decoded = new short[dataLen / blockAlign * samplesPerBlock * channels];
+		for (int b = 0; b < dataLen / blockAlign; b++) {
+			bytes.position(60 + b * blockAlign);
+			ImaAdpcmCodec.decodeBlock(bytes, channels, samplesPerBlock, block);
+			System.arraycopy(block, 0, decoded, b * block.length, block.length);
+		}
+		return decoded;
+	}
+
+	private static double snr(short[] original, short[] decoded) {
+		double signal = 0, noise = 0;
+		for (int i = 0; i < original.length; i++) {
+			signal += (double) original[i] * original[i];
+			double error = original[i] - decoded[i];
+			noise += error * error;
+		}
+		return 10 * Math.log10(signal / Math.max(1, noise));
+	}
+
+	@Test
+	public void encodesToneWithinQuantisationError() throws IOException {
+		short[] samples = tone(SAMPLE_RATE, 1);
+		File file = folder.newFile();
+
+		try (AdpcmWavWriter writer = new AdpcmWavWriter(file, SAMPLE_RATE, 1)) {
+			// odd slices, so staging has to split input across block boundaries
+			ByteBuffer bytes = toBytes(samples);
+			while (bytes.hasRemaining()) {
+				ByteBuffer slice = bytes.duplicate();
+				slice.limit(Math.min(bytes.limit(), bytes.position() + 3000));
+				writer.appendAudioBytes(slice);
+				assertFalse(slice.hasRemaining());
+				bytes.position(slice.position());
+			}
+		}
+
+		short[] decoded = decode(file, 1, samples.length);
+		assertTrue(snr(samples, decoded) > 25);
+		assertTrue(file.length() < samples.length * 2 / 3);
+	}
+
+	@Test
+	public void encodesStereoChannelsIndependently() throws IOException {
+		int frames = 5000;
+		short[] samples = tone(frames, 2);
+		File file = folder.newFile();
+
+		try (AdpcmWavWriter writer = new AdpcmWavWriter(file, SAMPLE_RATE, 2)) {
+			writer.appendAudioBytes(toBytes(samples));
+		}
+
+		short[] decoded = decode(file, 2, frames);
+		short[] left = new short[frames], right = new short[frames];
+		short[] decodedLeft = new short[frames], decodedRight = new short[frames];
+		for (int i = 0; i < frames; i++) {
+			left[i] = samples[i * 2];
+			right[i] = samples[i * 2 + 1];
+			decodedLeft[i] = decoded[i * 2];
+			decodedRight[i] = decoded[i * 2 + 1];
+		}
+		assertTrue(snr(left, decodedLeft) > 25);
+		assertTrue(snr(right, decodedRight) > 25);
+	}
+
+	@Test
+	public void parallelEncodingMatchesSequential() throws IOException {
+		// enough segments to fill the in-flight window several times, plus a short tail
+		int samplesPerBlock = ImaAdpcmCodec.samplesPerBlock(
+				ImaAdpcmCodec.defaultBlockAlign(SAMPLE_RATE, 2), 2);
+		int frames = AdpcmWavWriter.SEGMENT_BLOCKS * samplesPerBlock * 11 + 1234;
+		ByteBuffer input = toBytes(tone(frames, 2));
+
+		File sequential = folder.newFile();
+		try (AdpcmWavWriter writer = new AdpcmWavWriter(sequential, SAMPLE_RATE, 2)) {
+			writer.appendAudioBytes(input.duplicate());
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(2);
+		File parallel = folder.newFile();
+		try (AdpcmWavWriter writer = new AdpcmWavWriter(parallel, SAMPLE_RATE, 2, pool)) {
+			ByteBuffer bytes = input.duplicate();
+			while (bytes.hasRemaining()) {
+				ByteBuffer slice = bytes.duplicate();
+				slice.limit(Math.min(bytes.limit(), bytes.position() + 50_000));
+				writer.appendAudioBytes(slice);
+				bytes.position(slice.position());
+			}
+			assertEquals(frames, writer.getFrameCount());
+		} finally {
+			pool.shutdown();
+		}
+
+		assertTrue(Arrays.equals(Files.readAllBytes(sequential.toPath()),
+				Files.readAllBytes(parallel.toPath())));
+		assertEquals(frames, ByteBuffer.wrap(Files.readAllBytes(parallel.toPath()))
+				.order(ByteOrder.LITTLE_ENDIAN).getInt(48));
+	}
+
+	@Test
+	public void segmentsEncodeAsWellAsOneContinuousStream() throws IOException {
+		int blockAlign = ImaAdpcmCodec.defaultBlockAlign(SAMPLE_RATE, 1);
+		int samplesPerBlock = ImaAdpcmCodec.samplesPerBlock(blockAlign, 1);
+		int frames = AdpcmWavWriter.SEGMENT_BLOCKS * samplesPerBlock * 6;
+		short[] samples = tone(frames, 1);
+
+		// one codec over the whole input, never restarting its step adaptation
+		ImaAdpcmCodec codec = new ImaAdpcmCodec(1, blockAlign);
+		ByteBuffer pcm = toBytes(samples);
+		ByteBuffer encoded = ByteBuffer.allocate(frames / samplesPerBlock * blockAlign)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		while (pcm.hasRemaining())
+			codec.encodeBlock(pcm, encoded);
+		encoded.flip();
+		short[] continuous = new short[frames];
+		short[] block = new short[samplesPerBlock];
+		for (int b = 0; encoded.hasRemaining(); b++) {
+			ImaAdpcmCodec.decodeBlock(encoded, 1, samplesPerBlock, block);
+			System.arraycopy(block, 0, continuous, b * samplesPerBlock, samplesPerBlock);
+		}
+
+		File file = folder.newFile();
+		try (AdpcmWavWriter writer = new AdpcmWavWriter(file, SAMPLE_RATE, 1)) {
+			writer.appendAudioBytes(toBytes(samples));
+		}
+
+		assertEquals(snr(samples, continuous), snr(samples, decode(file, 1, frames)), 0.01);
+	}
+
+	@Test
+	public void emptyInputWritesValidHeader() throws IOException {
+		File file = folder.newFile();
+
+		new AdpcmWavWriter(file, SAMPLE_RATE, 1).close();
+
+		assertEquals(0, decode(file, 1, 0).length);
+	}
+
+	@Test
+	public void partialFrameAtTheEndIsDropped() throws IOException {
+		short[] samples = tone(1001, 2);
+		ByteBuffer bytes = toBytes(samples);
+
+		// less than a frame on its own, then a whole number of frames plus three bytes
+		File file = folder.newFile();
+		ByteBuffer head = bytes.duplicate();
+		head.limit(3);
+		try (AdpcmWavWriter writer = new AdpcmWavWriter(file, SAMPLE_RATE, 2)) {
+			writer.appendAudioBytes(head);
+		}
+		assertEquals(0, decode(file, 2, 0).length);
+
+		file = folder.newFile();
+		try (AdpcmWavWriter writer = new AdpcmWavWriter(file, SAMPLE_RATE, 2)) {
+			bytes.limit(bytes.limit() - 1);
+			writer.appendAudioBytes(bytes);
+		}
+		short[] decoded = decode(file, 2, 1000);
+		assertTrue(snr(Arrays.copyOf(samples, 2000), Arrays.copyOf(decoded, 2000)) > 25);
+	}
+
+	@Test
+	public void encode_readsPcmWavFile() throws IOException {
+		short[] samples = tone(10_000, 1);
+		File source = folder.newFile("source.wav");
+		try (WavWriter writer = new WavWriter(source, SAMPLE_RATE, 1)) {
+			writer.appendAudioBytes(toBytes(samples));
+			writer.insertMetadataTag(WavFile.TITLE_TAG, "export");
+		}
+		File target = new File(folder.getRoot(), "target.wav");
+
+		assertTrue(AdpcmWavWriter.encode(source, target));
+
+		assertTrue(snr(samples, decode(target, 1, samples.length)) > 25);
+	}
+
+	@Test
+	public void encode_resamplesToTargetRate() throws IOException {
+		File source = folder.newFile("source.wav");
+		try (WavWriter writer = new WavWriter(source, SAMPLE_RATE, 1)) {
+			writer.appendAudioBytes(toBytes(tone(SAMPLE_RATE, 1)));
+		}
+		File target = new File(folder.getRoot(), "target.wav");
+
+		assertTrue(AdpcmWavWriter.encode(source, target, null, 16000));
+
+		ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(target.toPath()))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(16000, header.getInt(24));
+	}
+
+	@Test
+	public void encode_rejectsInvalidSource() throws IOException {
+		File source = folder.newFile("broken.wav");
+		File target = new File(folder.getRoot(), "target.wav");
+
+		assertFalse(AdpcmWavWriter.encode(source, target));
+		assertFalse(target.exists());
+	}
+}
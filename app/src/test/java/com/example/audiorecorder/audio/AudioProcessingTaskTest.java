@@ -0,0 +1,175 @@
+package com.example.audiorecorder.audio;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AudioProcessingTaskTest {
+
+	private static final int BLOCK_SIZE = 256;
+
+	/** Keeps a copy of every written block; the task recycles the buffers it hands over. */
+	private static class ListSink implements IAudioSink {
+		final List<byte[]> blocks = new ArrayList<>();
+
+		@Override
+		public void appendAudioBytes(ByteBuffer audioBlock) {
+			byte[] bytes = new byte[audioBlock.remaining()];
+			audioBlock.get(bytes);
+			blocks.add(bytes);
+		}
+	}
+
+	private static ByteBuffer awaitFreeBuffer(AudioBufferPool pool) {
+		ByteBuffer buffer;
+		while ((buffer = pool.acquire()) == null)
+			Thread.yield();
+		return buffer;
+	}
+
+	private static void fill(ByteBuffer buffer, short value) {
+		ShortBuffer samples = buffer.asShortBuffer();
+		while (samples.hasRemaining())
+			samples.put(value);
+	}
+
+	private static Thread startProducer(AudioBufferPool pool, int blockCount) {
+		Thread producer = new Thread(() -> {
+			for (int i = 0; i < blockCount; i++) {
+				ByteBuffer buffer = awaitFreeBuffer(pool);
+				fill(buffer, (short) (1000 + i));
+				pool.publish(buffer);
+			}
+			pool.publishEndOfStream();
+		});
+		producer.start();
+		return producer;
+	}
+
+	private static void assertBlocksInOrder(List<byte[]> output, int blockCount) {
+		assertEquals(blockCount, output.size());
+
+		int index = 0;
+		for (byte[] bytes : output) {
+			assertEquals(BLOCK_SIZE * 2, bytes.length);
+			short expected = (short) (1000 + index++);
+			ShortBuffer samples = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN)
+					.asShortBuffer();
+			while (samples.hasRemaining())
+				assertEquals(expected, samples.get());
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void drainsQueuedBlocksAtShutdown() throws InterruptedException {
+		int blockCount = 64;
+		AudioBufferPool pool = new AudioBufferPool(blockCount, BLOCK_SIZE * 2);
+		ListSink output = new ListSink();
+
+		// everything, including the end-of-stream marker, is queued before consuming starts
+		startProducer(pool, blockCount).join();
+
+		Thread consumer = new Thread(new AudioProcessingTask(pool, output));
+		consumer.start();
+		consumer.join();
+
+		assertBlocksInOrder(output.blocks, blockCount);
+		assertEquals(0, pool.getDroppedBlocks());
+	}
+
+	@Test(timeout = 10000)
+	public void preservesAllBlocksUnderBackpressure() throws InterruptedException {
+		int blockCount = 500;
+		AudioBufferPool pool = new AudioBufferPool(4, BLOCK_SIZE * 2);
+		ListSink output = new ListSink();
+
+		Thread consumer = new Thread(new AudioProcessingTask(pool, output));
+		consumer.start();
+		Thread producer = startProducer(pool, blockCount);
+
+		producer.join();
+		consumer.join();
+
+		assertBlocksInOrder(output.blocks, blockCount);
+	}
+
+	@Test(timeout = 10000)
+	public void skipsSilentBlocks() throws InterruptedException {
+		AudioBufferPool pool = new AudioBufferPool(4, BLOCK_SIZE * 2);
+		ListSink output = new ListSink();
+
+		ByteBuffer silent = pool.acquire();
+		fill(silent, (short) 10);
+		pool.publish(silent);
+		ByteBuffer loud = pool.acquire();
+		fill(loud, (short) -5000);
+		pool.publish(loud);
+		pool.publishEndOfStream();
+
+		// one frame per block, a single loud frame opens a segment and nothing is carried over
+		AudioProcessingTask task = new AudioProcessingTask(pool, output,
+				new VoiceActivityDetector(BLOCK_SIZE, -45, -51, 1, 0, 0));
+		task.run();
+
+		assertEquals(1, output.blocks.size());
+		long level = task.getLevelMeter().get();
+		assertEquals(5000, LevelMeter.peakOf(level));
+		assertEquals(5000, LevelMeter.rmsOf(level), 0.01);
+	}
+
+	@Test(timeout = 10000)
+	public void reportsTrimmedBlocksAsZeroLevel() throws InterruptedException {
+		AudioBufferPool pool = new AudioBufferPool(4, BLOCK_SIZE * 2);
+		ListSink output = new ListSink();
+
+		ByteBuffer loud = pool.acquire();
+		fill(loud, (short) 3000);
+		pool.publish(loud);
+		ByteBuffer silent = pool.acquire();
+		fill(silent, (short) 10);
+		pool.publish(silent);
+		pool.publishEndOfStream();
+
+		AudioProcessingTask task = new AudioProcessingTask(pool, output,
+				new VoiceActivityDetector(BLOCK_SIZE, -45, -51, 1, 0, 0));
+		task.run();
+
+		assertEquals(1, output.blocks.size());
+		assertEquals(0, task.getLevelMeter().get());
+	}
+
+	@Test(timeout = 10000)
+	public void capturesFromSyntheticSource() throws InterruptedException {
+		int blockCount = 100;
+		int totalSamples = blockCount * BLOCK_SIZE + BLOCK_SIZE / 2;
+		// one buffer per block, plus one for the read that reports the end of the stream
+		AudioBufferPool pool = new AudioBufferPool(blockCount + 2, BLOCK_SIZE * 2);
+		ListSink output = new ListSink();
+
+		Thread consumer = new Thread(new AudioProcessingTask(pool, output));
+		consumer.start();
+		new AudioGrabbingTask(new SyntheticAudioSource(SyntheticAudioSource.Signal.SINE, 44100,
+				440, 10000, totalSamples), pool).run();
+		consumer.join();
+
+		SyntheticAudioSource reference = new SyntheticAudioSource(
+				SyntheticAudioSource.Signal.SINE, 44100, 440, 10000, totalSamples);
+		ByteBuffer expected = ByteBuffer.allocate(totalSamples * 2).order(ByteOrder.LITTLE_ENDIAN);
+		reference.start();
+		assertEquals(totalSamples * 2, reference.read(expected));
+
+		ByteBuffer actual = ByteBuffer.allocate(totalSamples * 2);
+		for (byte[] bytes : output.blocks)
+			actual.put(bytes);
+
+		assertEquals(blockCount + 1, output.blocks.size());
+		assertEquals(expected, actual.flip());
+		assertEquals(0, pool.getDroppedBlocks());
+	}
+}
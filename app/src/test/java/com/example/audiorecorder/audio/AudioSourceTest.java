@@ -0,0 +1,87 @@
+package com.example.audiorecorder.audio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class AudioSourceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static ByteBuffer newBlock(int samples) {
+		return ByteBuffer.allocateDirect(samples * 2).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@Test
+	public void wavFileSource_replaysPayloadThenEnds() throws IOException {
+		File file = folder.newFile("replay.wav");
+		byte[] audio = new byte[1000];
+		for (int i = 0; i < audio.length; i++)
+			audio[i] = (byte) i;
+		try (WavWriter writer = new WavWriter(file, 16000, 1)) {
+			writer.appendAudioBytes(audio);
+			writer.insertMetadataTag(WavFile.TITLE_TAG, "replay");
+		}
+
+		WavFileSource source = new WavFileSource(file);
+		assertEquals(16000, source.getSampleRate());
+		assertEquals(1, source.getChannels());
+
+		source.start();
+		ByteBuffer block = newBlock(256);
+		ByteBuffer replayed = ByteBuffer.allocate(audio.length);
+		int bytesRead;
+		while ((bytesRead = source.read(block)) != IAudioSource.END_OF_STREAM) {
+			assertEquals(block.remaining(), bytesRead);
+			replayed.put(block);
+		}
+		source.release();
+
+		assertArrayEquals(audio, replayed.array());
+	}
+
+	@Test
+	public void syntheticSource_isDeterministicAndFinite() {
+		SyntheticAudioSource source = new SyntheticAudioSource(
+				SyntheticAudioSource.Signal.NOISE, 44100, 0, 8000, 300);
+		ByteBuffer first = newBlock(512);
+		ByteBuffer second = newBlock(512);
+
+		source.start();
+		assertEquals(600, source.read(first));
+		assertEquals(IAudioSource.END_OF_STREAM, source.read(second));
+
+		source.start();
+		assertEquals(600, source.read(second));
+		assertEquals(first, second);
+	}
+
+	@Test
+	public void syntheticSource_alternatesToneAndSilence() {
+		SyntheticAudioSource source = new SyntheticAudioSource(
+				SyntheticAudioSource.Signal.SILENCE_BURSTS, 8000, 1000, 10000, -1);
+		source.setBurstLength(100);
+		ByteBuffer block = newBlock(400);
+
+		source.start();
+		source.read(block);
+
+		int tonePeak = 0, silencePeak = 0;
+		for (int i = 0; i < 400; i++) {
+			int sample = Math.abs(block.getShort(i * 2));
+			if ((i / 100) % 2 == 0) tonePeak = Math.max(tonePeak, sample);
+			else silencePeak = Math.max(silencePeak, sample);
+		}
+
+		assertTrue(tonePeak > 9000);
+		assertEquals(0, silencePeak);
+	}
+}
@@ -0,0 +1,110 @@
+package com.example.audiorecorder.audio;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class CaptureEngineTest {
+
+	private static final int BLOCK_SIZE = 256;
+
+	private static class CountingSource extends SyntheticAudioSource {
+		final AtomicInteger starts = new AtomicInteger();
+		final AtomicInteger releases = new AtomicInteger();
+
+		CountingSource() {
+			super(Signal.SINE, 44100, 440, 10000, -1);
+		}
+
+		@Override
+		public void start() {
+			starts.incrementAndGet();
+			super.start();
+		}
+
+		@Override
+		public void release() {
+			releases.incrementAndGet();
+			super.release();
+		}
+	}
+
+	private static class CountingSink implements IAudioSink {
+		final AtomicLong bytes = new AtomicLong();
+
+		@Override
+		public void appendAudioBytes(ByteBuffer audioBlock) {
+			bytes.addAndGet(audioBlock.remaining());
+			audioBlock.position(audioBlock.limit());
+		}
+
+		void awaitBytes(long count) {
+			while (bytes.get() < count)
+				Thread.yield();
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void pauseStopsDeliveryWithoutRestartingSource() throws InterruptedException {
+		CountingSource source = new CountingSource();
+		CaptureEngine engine = new CaptureEngine(source, 4, BLOCK_SIZE * 2);
+		CountingSink first = new CountingSink();
+		CountingSink second = new CountingSink();
+
+		engine.resume(first);
+		first.awaitBytes(BLOCK_SIZE * 2 * 10);
+		engine.pause();
+
+		long delivered = first.bytes.get();
+		assertEquals(0, delivered % (BLOCK_SIZE * 2));
+		Thread.sleep(50);
+		assertEquals("blocks delivered while paused", delivered, first.bytes.get());
+
+		engine.resume(second);
+		second.awaitBytes(BLOCK_SIZE * 2);
+		engine.pause();
+		engine.release();
+
+		assertEquals(delivered, first.bytes.get());
+		assertEquals(1, source.starts.get());
+		assertEquals(1, source.releases.get());
+	}
+
+	@Test(timeout = 10000)
+	public void pauseAndReleaseBeforeFirstResume() throws InterruptedException {
+		CountingSource source = new CountingSource();
+		CaptureEngine engine = new CaptureEngine(source, 4, BLOCK_SIZE * 2);
+
+		engine.pause();
+		engine.release();
+
+		assertEquals(0, source.starts.get());
+		assertEquals(1, source.releases.get());
+	}
+
+	@Test(timeout = 10000)
+	public void pauseGivesUpWhenProcessingThreadDies() throws InterruptedException {
+		CountingSource source = new CountingSource();
+		CaptureEngine engine = new CaptureEngine(source, 4, BLOCK_SIZE * 2);
+		CountingSink sink = new CountingSink() {
+			@Override
+			public void appendAudioBytes(ByteBuffer audioBlock) {
+				super.appendAudioBytes(audioBlock);
+				throw new IllegalStateException("sink failure");
+			}
+		};
+
+		engine.resume(sink);
+		sink.awaitBytes(1);
+		// the provider goes on filling the pool, nobody is left to drain it
+		Thread.sleep(50);
+
+		assertFalse(engine.pause());
+		engine.release();
+		assertEquals(1, source.releases.get());
+	}
+}
@@ -0,0 +1,201 @@
+package com.example.audiorecorder.audio;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RiffChunkIteratorTest {
+
+	private static byte[] chunk(String id, int size) {
+		ByteBuffer chunk = ByteBuffer.allocate(8 + size + (size & 1)).order(ByteOrder.LITTLE_ENDIAN);
+		chunk.put(id.getBytes(StandardCharsets.US_ASCII));
+		chunk.putInt(size);
+		for (int i = 0; i < size; i++)
+			chunk.put((byte) (i + 1));
+		return chunk.array();
+	}
+
+	private static byte[] riff(String form, byte[]... chunks) {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		for (byte[] chunk : chunks)
+			body.write(chunk, 0, chunk.length);
+
+		ByteBuffer riff = ByteBuffer.allocate(12 + body.size()).order(ByteOrder.LITTLE_ENDIAN);
+		riff.put("RIFF".getBytes(StandardCharsets.US_ASCII));
+		riff.putInt(4 + body.size());
+		riff.put(form.getBytes(StandardCharsets.US_ASCII));
+		riff.put(body.toByteArray());
+		return riff.array();
+	}
+
+	private static byte[] format(int channels, int sampleRate) {
+		ByteBuffer fmt = ByteBuffer.allocate(8 + 16).order(ByteOrder.LITTLE_ENDIAN);
+		fmt.put("fmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16);
+		fmt.putShort((short) 1).putShort((short) channels).putInt(sampleRate)
+				.putInt(sampleRate * channels * 2).putShort((short) (channels * 2))
+				.putShort((short) 16);
+		return fmt.array();
+	}
+
+	// a file as another tool might lay it out: extra chunks, odd sizes, metadata in front
+	static byte[] foreignWav(int audioLen) {
+		HashMap<String, String> metadata = new HashMap<>();
+		metadata.put(WavFile.TITLE_TAG, "Imported");
+		SilenceIndex silence = new SilenceIndex();
+		silence.add(10, 20);
+		return riff("WAVE", format(2, 22050), chunk("fact", 4), InfoChunk.toChunk(metadata),
+				chunk("junk", 5), chunk("data", audioLen), silence.toChunk());
+	}
+
+	@Test
+	public void next_skipsBodiesAndPadBytes() throws IOException {
+		byte[] file = riff("WAVE", chunk("abcd", 3), chunk("efgh", 0), chunk("ijkl", 6));
+
+		RiffChunkIterator chunks = RiffChunkIterator.open(new MemoryChannel(file));
+
+		assertNotNull(chunks);
+		assertTrue(chunks.isForm("WAVE".getBytes(StandardCharsets.US_ASCII)));
+		assertTrue(chunks.next());
+		assertEquals("abcd", chunks.getId());
+		assertEquals(12, chunks.getOffset());
+		assertEquals(3, chunks.getSize());
+		assertEquals(24, chunks.getEndOffset());
+		assertArrayEquals(new byte[]{1, 2, 3}, chunks.readData(16));
+		assertTrue(chunks.next());
+		assertEquals("efgh", chunks.getId());
+		assertEquals(24, chunks.getOffset());
+		assertTrue(chunks.next());
+		assertEquals("ijkl", chunks.getId());
+		assertEquals(32, chunks.getOffset());
+		assertFalse(chunks.isTruncated());
+		assertFalse(chunks.next());
+		assertFalse(chunks.next());
+	}
+
+	@Test
+	public void next_endsAtTruncatedChunk() throws IOException {
+		byte[] file = riff("WAVE", chunk("abcd", 2), chunk("data", 100));
+		file = Arrays.copyOf(file, file.length - 60);
+
+		RiffChunkIterator chunks = RiffChunkIterator.open(new MemoryChannel(file));
+
+		assertNotNull(chunks);
+		assertTrue(chunks.next());
+		assertTrue(chunks.next());
+		assertEquals("data", chunks.getId());
+		assertTrue(chunks.isTruncated());
+		assertEquals(100, chunks.getSize());
+		assertEquals(40, chunks.getAvailableSize());
+		assertNull(chunks.readChunk(32));
+		assertEquals(48, chunks.readChunk(64).length);
+		assertFalse(chunks.next());
+	}
+
+	@Test
+	public void open_rejectsOtherFiles() throws IOException {
+		assertNull(RiffChunkIterator.open(new MemoryChannel(new byte[0])));
+		assertNull(RiffChunkIterator.open(new MemoryChannel(
+				"RIFX\0\0\0\0WAVE".getBytes(StandardCharsets.US_ASCII))));
+		assertFalse(RiffChunkIterator.open(new MemoryChannel(riff("AVI ")))
+				.isForm("WAVE".getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	@Test
+	public void probe_readsForeignLayout() throws IOException {
+		byte[] file = foreignWav(99);
+
+		WavFile wav = WavFile.probe(new MemoryChannel(file));
+
+		assertNotNull(wav);
+		assertEquals(22050, wav.getSampleRate());
+		assertEquals(2, wav.getChannels());
+		// cut to whole frames
+		assertEquals(96, wav.getAudioLength());
+		assertEquals("Imported", wav.getMetadata(WavFile.TITLE_TAG));
+		assertEquals(20, wav.getSilenceIndex().getTotalLength());
+		assertEquals(new String(file, (int) wav.getAudioOffset() - 8, 4,
+				StandardCharsets.US_ASCII), "data");
+	}
+
+	@Test
+	public void probe_survivesCorruptFiles() throws IOException {
+		byte[] valid = foreignWav(64);
+		Random random = new Random(42);
+
+		for (int i = 0; i < 1000; i++) {
+			byte[] file = Arrays.copyOf(valid, random.nextInt(valid.length + 1));
+			for (int j = random.nextInt(8); j > 0 && file.length > 0; j--)
+				file[random.nextInt(file.length)] = (byte) random.nextInt(256);
+
+			WavFile wav = WavFile.probe(new MemoryChannel(file));
+
+			if (wav != null) {
+				assertTrue(wav.getAudioLength() >= 0);
+				assertTrue(wav.getAudioOffset() + wav.getAudioLength() <= file.length);
+			}
+		}
+	}
+
+	static class MemoryChannel implements SeekableByteChannel {
+		private final byte[] bytes;
+		private int position = 0;
+
+		MemoryChannel(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) {
+			if (position >= bytes.length) return -1;
+			int read = Math.min(dst.remaining(), bytes.length - position);
+			dst.put(bytes, position, read);
+			position += read;
+			return read;
+		}
+
+		@Override
+		public int write(ByteBuffer src) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long position() {
+			return position;
+		}
+
+		@Override
+		public SeekableByteChannel position(long newPosition) {
+			position = (int) Math.min(newPosition, Integer.MAX_VALUE);
+			return this;
+		}
+
+		@Override
+		public long size() {
+			return bytes.length;
+		}
+
+		@Override
+		public SeekableByteChannel truncate(long size) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package com.example.audiorecorder.audio;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SampleRateConverterTest {
+
+	private static short[] sine(int sampleRate, double frequency, int frames, int channels) {
+		short[] samples = new short[frames * channels];
+		for (int i = 0; i < frames; i++)
+			samples[i * channels] = (short) Math.round(
+					16000 * Math.sin(2 * Math.PI * frequency * i / sampleRate));
+		return samples;
+	}
+
+	private static short[] convertAll(SampleRateConverter converter, short[] in, int channels) {
+		int frames = in.length / channels;
+		short[] out = new short[converter.getMaxOutputFrames(frames) * channels];
+		int written = converter.process(in, 0, frames, out, 0);
+		return Arrays.copyOf(out, written * channels);
+	}
+
+	// signal to noise ratio against the tone sampled exactly at the output rate; the filter's
+	// delay is zero, so output frame n is the tone at time n / outputRate
+	private static double sineSnr(int inputRate, int outputRate) {
+		short[] in = sine(inputRate, 1000, inputRate, 1);
+		short[] out = convertAll(new SampleRateConverter(inputRate, outputRate, 1), in, 1);
+
+		double signal = 0, noise = 0;
+		// skip the edges, where the filter reads silence
+		for (int n = outputRate / 100; n < out.length - outputRate / 100; n++) {
+			double reference = 16000 * Math.sin(2 * Math.PI * 1000 * n / outputRate);
+			signal += reference * reference;
+			noise += (out[n] - reference) * (out[n] - reference);
+		}
+		return 10 * Math.log10(signal / noise);
+	}
+
+	@Test
+	public void process_matchesReferenceSine() {
+		// 16-bit rounding alone allows about 93 dB
+		assertTrue(sineSnr(44100, 16000) > 85);
+		assertTrue(sineSnr(16000, 44100) > 85);
+		assertTrue(sineSnr(48000, 44100) > 85);
+	}
+
+	@Test
+	public void process_rejectsAliases() {
+		// 12 kHz is above the 8 kHz output Nyquist frequency and would fold to 4 kHz
+		short[] out = convertAll(new SampleRateConverter(44100, 16000, 1),
+				sine(44100, 12000, 44100, 1), 1);
+
+		double energy = 0;
+		for (int n = 160; n < out.length - 160; n++)
+			energy += (double) out[n] * out[n];
+		double rms = Math.sqrt(energy / (out.length - 320));
+		assertTrue(20 * Math.log10(rms / (16000 / Math.sqrt(2))) < -70);
+	}
+
+	@Test
+	public void process_isIndependentOfBlockSize() {
+		short[] in = sine(44100, 440, 20000, 2);
+		Random random = new Random(42);
+		for (int i = 1; i < in.length; i += 2)
+			in[i] = (short) random.nextInt();
+
+		short[] whole = convertAll(new SampleRateConverter(44100, 16000, 2), in, 2);
+
+		SampleRateConverter converter = new SampleRateConverter(44100, 16000, 2);
+		short[] blocks = new short[whole.length + 4];
+		int frame = 0, written = 0;
+		while (frame < 20000) {
+			int frames = Math.min(20000 - frame, 1 + random.nextInt(3000));
+			short[] out = new short[converter.getMaxOutputFrames(frames) * 2];
+			int produced = converter.process(in, frame * 2, frames, out, 0);
+			assertTrue(produced <= converter.getMaxOutputFrames(frames));
+			System.arraycopy(out, 0, blocks, written * 2, produced * 2);
+			written += produced;
+			frame += frames;
+		}
+
+		assertEquals(whole.length, written * 2);
+		assertArrayEquals(whole, Arrays.copyOf(blocks, written * 2));
+	}
+
+	@Test
+	public void process_keepsChannelsApart() {
+		short[] out = convertAll(new SampleRateConverter(16000, 44100, 2),
+				sine(16000, 1000, 8000, 2), 2);
+
+		int leftPeak = 0;
+		for (int i = 0; i < out.length; i += 2) {
+			leftPeak = Math.max(leftPeak, Math.abs(out[i]));
+			assertEquals(0, out[i + 1]);
+		}
+		assertTrue(leftPeak > 15000);
+	}
+
+	@Test
+	public void process_convertsLittleEndianBuffers() {
+		short[] in = sine(48000, 1000, 4800, 1);
+		short[] expected = convertAll(new SampleRateConverter(48000, 16000, 1), in, 1);
+
+		SampleRateConverter converter = new SampleRateConverter(48000, 16000, 1);
+		ByteBuffer input = ByteBuffer.allocate(in.length * 2 + 1).order(ByteOrder.LITTLE_ENDIAN);
+		for (short sample : in)
+			input.putShort(sample);
+		input.flip();
+		ByteBuffer output = ByteBuffer.allocate(converter.getMaxOutputFrames(in.length) * 2)
+				.order(ByteOrder.LITTLE_ENDIAN);
+
+		converter.process(input, output);
+
+		assertEquals(0, input.remaining());
+		assertEquals(expected.length * 2, output.position());
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(expected[i], output.getShort(i * 2));
+	}
+
+	@Test
+	public void resamplingSource_deliversTargetRate() {
+		SyntheticAudioSource tone = new SyntheticAudioSource(
+				SyntheticAudioSource.Signal.SILENCE_BURSTS, 44100, 1000, 8000, 44100);
+		tone.setBurstLength(44100);
+		ResamplingAudioSource source = new ResamplingAudioSource(tone, 16000);
+		assertEquals(16000, source.getSampleRate());
+
+		ByteBuffer block = ByteBuffer.allocateDirect(AudioGrabbingTask.BUFFER_SIZE * 2)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		long bytes = 0;
+		int bytesRead;
+		source.start();
+		while ((bytesRead = source.read(block)) != IAudioSource.END_OF_STREAM) {
+			assertEquals(block.limit(), bytesRead);
+			bytes += bytesRead;
+		}
+		source.release();
+
+		// all but the frames still inside the filter
+		assertTrue(bytes / 2 > 16000 - 64 && bytes / 2 <= 16000);
+	}
+}
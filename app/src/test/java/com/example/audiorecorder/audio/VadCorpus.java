@@ -0,0 +1,142 @@
+package com.example.audiorecorder.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Deterministic synthetic recording with a speech label per sample: a noise floor with
+ * voiced, harmonic "syllables" at several levels, soft onsets, a short pause inside a phrase
+ * and an isolated click.
+ */
+class VadCorpus {
+
+	static final int SAMPLE_RATE = 44100;
+
+	private short[] samples = new short[0];
+	private boolean[] speech = new boolean[0];
+	private int length = 0;
+	private int seed = 0x2545F491;
+
+	// sample offsets of the pause inside the first phrase and of the click
+	int pauseStart, pauseEnd, clickAt;
+
+	static VadCorpus standard() {
+		VadCorpus corpus = new VadCorpus();
+		corpus.noise(1000, -60);
+		corpus.speech(800, -20);
+		corpus.pauseStart = corpus.length;
+		corpus.noise(150, -60);
+		corpus.pauseEnd = corpus.length;
+		corpus.speech(600, -30);
+		corpus.noise(1500, -60);
+		corpus.clickAt = corpus.length;
+		corpus.click(3);
+		corpus.noise(1000, -60);
+		corpus.speech(500, -38);
+		corpus.noise(1000, -60);
+		return corpus;
+	}
+
+	int length() {
+		return length;
+	}
+
+	boolean isSpeech(int sample) {
+		return speech[sample];
+	}
+
+	ByteBuffer toBytes() {
+		return toBytes(SampleFormat.PCM_16, 1);
+	}
+
+	// the same signal in another format, every channel carrying a copy
+	ByteBuffer toBytes(SampleFormat format, int channels) {
+		ByteBuffer bytes = ByteBuffer.allocateDirect(length * channels *
+				format.getBytesPerSample()).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < length; i++) {
+			for (int c = 0; c < channels; c++) {
+				switch (format) {
+					case PCM_8:
+						bytes.put((byte) ((samples[i] >> 8) + 128));
+						break;
+					case PCM_24:
+						bytes.put((byte) 0).putShort(samples[i]);
+						break;
+					case FLOAT_32:
+						bytes.putFloat(samples[i] / (float) Short.MAX_VALUE);
+						break;
+					default:
+						bytes.putShort(samples[i]);
+						break;
+				}
+			}
+		}
+		bytes.flip();
+		return bytes;
+	}
+
+	private static double amplitude(double level) {
+		return Short.MAX_VALUE * Math.pow(10, level / 20);
+	}
+
+	private double nextNoise() {
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		return seed / (double) Integer.MAX_VALUE;
+	}
+
+	private int append(int count, boolean isSpeech) {
+		int start = length;
+		length += count;
+		samples = Arrays.copyOf(samples, length);
+		speech = Arrays.copyOf(speech, length);
+		Arrays.fill(speech, start, length, isSpeech);
+		return start;
+	}
+
+	private static int ms(int ms) {
+		return SAMPLE_RATE * ms / 1000;
+	}
+
+	// uniform noise has an RMS of 1/sqrt(3) of its peak
+	private void noise(int durationMs, double level) {
+		double peak = amplitude(level) * Math.sqrt(3);
+		int start = append(ms(durationMs), false);
+		for (int i = start; i < length; i++)
+			samples[i] = (short) (peak * nextNoise());
+	}
+
+	// 140 Hz harmonic series under a 4 Hz syllable envelope with 20 ms raised-cosine ramps
+	private void speech(int durationMs, double level) {
+		int count = ms(durationMs);
+		int ramp = ms(20);
+		double peak = amplitude(level) * Math.sqrt(2);
+		double floor = amplitude(-60) * Math.sqrt(3);
+		int start = append(count, true);
+
+		for (int i = 0; i < count; i++) {
+			double t = (double) i / SAMPLE_RATE;
+			double voice = 0;
+			for (int harmonic = 1; harmonic <= 5; harmonic++)
+				voice += Math.sin(2 * Math.PI * 140 * harmonic * t) / harmonic;
+			voice /= 2.3;
+
+			double envelope = 0.6 + 0.4 * Math.sin(2 * Math.PI * 4 * t);
+			int edge = Math.min(i, count - 1 - i);
+			if (edge < ramp)
+				envelope *= 0.5 - 0.5 * Math.cos(Math.PI * edge / ramp);
+
+			double value = peak * envelope * voice + floor * nextNoise();
+			samples[start + i] = (short) Math.max(Short.MIN_VALUE,
+					Math.min(Short.MAX_VALUE, Math.round(value)));
+		}
+	}
+
+	private void click(int durationMs) {
+		int start = append(ms(durationMs), false);
+		for (int i = start; i < length; i++)
+			samples[i] = (short) ((i & 1) == 0 ? 30000 : -30000);
+	}
+}
@@ -0,0 +1,238 @@
+package com.example.audiorecorder.audio;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class VoiceActivityDetectorTest {
+
+	private static final VadCorpus CORPUS = VadCorpus.standard();
+
+	/** Which frames of the input ended up in the output, recovered from the writes. */
+	private static class FrameTrackingSink implements IAudioSink {
+		final ByteArrayOutputStream written = new ByteArrayOutputStream();
+		ByteBuffer currentFrame;
+		boolean currentEmitted;
+		int preRollBytes;
+
+		@Override
+		public void appendAudioBytes(ByteBuffer audioBlock) {
+			if (audioBlock == currentFrame)
+				currentEmitted = true;
+			else
+				preRollBytes += audioBlock.remaining();
+
+			while (audioBlock.hasRemaining())
+				written.write(audioBlock.get());
+		}
+	}
+
+	private static boolean[] emittedFrames(VoiceActivityDetector detector, ByteBuffer audio,
+										   FrameTrackingSink sink) throws IOException {
+		int frameBytes = detector.getFrameBytes();
+		int frameCount = (audio.remaining() + frameBytes - 1) / frameBytes;
+		boolean[] emitted = new boolean[frameCount];
+		ByteBuffer frame = ByteBuffer.allocateDirect(frameBytes).order(audio.order());
+
+		for (int i = 0; i < frameCount; i++) {
+			ByteBuffer source = audio.duplicate();
+			source.position(i * frameBytes);
+			source.limit(Math.min(source.position() + frameBytes, audio.limit()));
+			frame.clear();
+			frame.put(source).flip();
+
+			sink.currentFrame = frame;
+			sink.currentEmitted = false;
+			sink.preRollBytes = 0;
+			detector.process(frame, sink);
+
+			assertEquals(0, sink.preRollBytes % frameBytes);
+			for (int j = i - sink.preRollBytes / frameBytes; j < i; j++) {
+				assertFalse("frame " + j + " written twice", emitted[j]);
+				emitted[j] = true;
+			}
+			emitted[i] = sink.currentEmitted;
+		}
+		return emitted;
+	}
+
+	private static boolean frameHasSpeech(int frame, int frameSamples) {
+		int end = Math.min((frame + 1) * frameSamples, CORPUS.length());
+		for (int i = frame * frameSamples; i < end; i++)
+			if (CORPUS.isSpeech(i)) return true;
+		return false;
+	}
+
+	@Test
+	public void keepsEverySpeechFrameIncludingOnsets() throws IOException {
+		VoiceActivityDetector detector = new VoiceActivityDetector(VadCorpus.SAMPLE_RATE);
+		boolean[] emitted = emittedFrames(detector, CORPUS.toBytes(), new FrameTrackingSink());
+		int frameSamples = detector.getFrameBytes() / 2;
+
+		for (int frame = 0; frame < emitted.length; frame++) {
+			if (frameHasSpeech(frame, frameSamples))
+				assertTrue("speech frame " + frame + " dropped", emitted[frame]);
+		}
+	}
+
+	@Test
+	public void dropsNoiseAwayFromSpeech() throws IOException {
+		VoiceActivityDetector detector = new VoiceActivityDetector(VadCorpus.SAMPLE_RATE);
+		boolean[] emitted = emittedFrames(detector, CORPUS.toBytes(), new FrameTrackingSink());
+		int frameSamples = detector.getFrameBytes() / 2;
+
+		// pre-roll and hangover legitimately keep some noise on either side of speech
+		int margin = (VoiceActivityDetector.DEFAULT_HANGOVER_MS
+				+ VoiceActivityDetector.DEFAULT_PRE_ROLL_MS) * VadCorpus.SAMPLE_RATE / 1000
+				/ frameSamples + 2;
+		int lastSpeech = -emitted.length;
+		int kept = 0, noise = 0;
+
+		for (int frame = 0; frame < emitted.length; frame++) {
+			if (frameHasSpeech(frame, frameSamples)) {
+				lastSpeech = frame;
+				continue;
+			}
+
+			int nextSpeech = frame;
+			while (nextSpeech < emitted.length && !frameHasSpeech(nextSpeech, frameSamples))
+				nextSpeech++;
+			if (nextSpeech == emitted.length) nextSpeech = Integer.MAX_VALUE / 2;
+
+			if (frame - lastSpeech > margin && nextSpeech - frame > margin) {
+				noise++;
+				if (emitted[frame]) kept++;
+			}
+		}
+
+		assertTrue(noise > 100);
+		assertEquals("noise frames kept far from speech", 0, kept);
+	}
+
+	@Test
+	public void bridgesShortPausesAndIgnoresClicks() throws IOException {
+		VoiceActivityDetector detector = new VoiceActivityDetector(VadCorpus.SAMPLE_RATE);
+		boolean[] emitted = emittedFrames(detector, CORPUS.toBytes(), new FrameTrackingSink());
+		int frameSamples = detector.getFrameBytes() / 2;
+
+		for (int frame = CORPUS.pauseStart / frameSamples;
+			 frame <= CORPUS.pauseEnd / frameSamples; frame++)
+			assertTrue("pause frame " + frame + " split the phrase", emitted[frame]);
+
+		int click = CORPUS.clickAt / frameSamples;
+		for (int frame = click - 5; frame <= click + 5; frame++)
+			assertFalse("click opened a segment at frame " + frame, emitted[frame]);
+	}
+
+	@Test
+	public void decidesTheSameInEveryFormat() throws IOException {
+		boolean[] expected = emittedFrames(new VoiceActivityDetector(VadCorpus.SAMPLE_RATE),
+				CORPUS.toBytes(), new FrameTrackingSink());
+
+		SampleFormat[] formats = {SampleFormat.PCM_24, SampleFormat.FLOAT_32,
+				SampleFormat.PCM_16, SampleFormat.FLOAT_32};
+		int[] channels = {1, 1, 2, 2};
+		for (int i = 0; i < formats.length; i++) {
+			VoiceActivityDetector detector = new VoiceActivityDetector(VadCorpus.SAMPLE_RATE,
+					channels[i], formats[i]);
+			ByteBuffer audio = CORPUS.toBytes(formats[i], channels[i]);
+
+			boolean[] emitted = emittedFrames(detector, audio, new FrameTrackingSink());
+
+			assertArrayEquals(formats[i] + " x" + channels[i], expected, emitted);
+		}
+	}
+
+	@Test
+	public void measuresLevelsInSixteenBitUnits() throws IOException {
+		VoiceActivityDetector pcm = new VoiceActivityDetector(VadCorpus.SAMPLE_RATE);
+		pcm.process(CORPUS.toBytes(), null);
+
+		for (SampleFormat format : new SampleFormat[]{SampleFormat.PCM_24,
+				SampleFormat.FLOAT_32}) {
+			VoiceActivityDetector detector = new VoiceActivityDetector(VadCorpus.SAMPLE_RATE,
+					2, format);
+			detector.process(CORPUS.toBytes(format, 2), null);
+
+			assertEquals(format.name(), pcm.getBlockPeak(), detector.getBlockPeak(), 1);
+			assertEquals(format.name(), pcm.getBlockRms(), detector.getBlockRms(), 0.01);
+		}
+	}
+
+	@Test
+	public void writesKeptFramesVerbatimAndInOrder() throws IOException {
+		VoiceActivityDetector detector = new VoiceActivityDetector(VadCorpus.SAMPLE_RATE);
+		ByteBuffer audio = CORPUS.toBytes();
+		FrameTrackingSink sink = new FrameTrackingSink();
+		boolean[] emitted = emittedFrames(detector, audio, sink);
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		int frameBytes = detector.getFrameBytes();
+		for (int frame = 0; frame < emitted.length; frame++) {
+			if (!emitted[frame]) continue;
+			for (int i = frame * frameBytes; i < Math.min((frame + 1) * frameBytes,
+					audio.limit()); i++)
+				expected.write(audio.get(i));
+		}
+
+		assertArrayEquals(expected.toByteArray(), sink.written.toByteArray());
+	}
+
+	@Test
+	public void blockSizeDoesNotChangeTheOutput() throws IOException {
+		ByteBuffer audio = CORPUS.toBytes();
+		FrameTrackingSink perFrame = new FrameTrackingSink();
+		emittedFrames(new VoiceActivityDetector(VadCorpus.SAMPLE_RATE), audio, perFrame);
+
+		VoiceActivityDetector detector = new VoiceActivityDetector(VadCorpus.SAMPLE_RATE);
+		FrameTrackingSink perBlock = new FrameTrackingSink();
+		int blockBytes = AudioGrabbingTask.BUFFER_SIZE * 2;
+		for (int offset = 0; offset < audio.limit(); offset += blockBytes) {
+			ByteBuffer block = audio.duplicate().order(audio.order());
+			block.position(offset);
+			block.limit(Math.min(offset + blockBytes, audio.limit()));
+			detector.process(block, perBlock);
+			assertEquals(offset, block.position());
+		}
+
+		assertArrayEquals(perFrame.written.toByteArray(), perBlock.written.toByteArray());
+	}
+
+	@Test
+	public void processDoesNotAllocate() throws IOException {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+
+		VoiceActivityDetector detector = new VoiceActivityDetector(VadCorpus.SAMPLE_RATE);
+		ByteBuffer audio = CORPUS.toBytes();
+		IAudioSink sink = audioBlock -> audioBlock.position(audioBlock.limit());
+		int blockBytes = AudioGrabbingTask.BUFFER_SIZE * 2;
+
+		// warm up so class loading and compilation are not counted
+		for (int round = 0; round < 20; round++) {
+			for (int offset = 0; offset < audio.limit(); offset += blockBytes) {
+				audio.limit(Math.min(offset + blockBytes, audio.capacity())).position(offset);
+				detector.process(audio, sink);
+			}
+			audio.limit(audio.capacity());
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long before = allocations.getThreadAllocatedBytes(threadId);
+		for (int offset = 0; offset < audio.capacity(); offset += blockBytes) {
+			audio.limit(Math.min(offset + blockBytes, audio.capacity())).position(offset);
+			detector.process(audio, sink);
+		}
+		long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+		assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+	}
+}
@@ -0,0 +1,531 @@
+package com.example.audiorecorder.audio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class WavFileTest {
+
+	private static final int AUDIO_START = 44;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File writeRecording(int audioLen) throws IOException {
+		File file = folder.newFile("recording.wav");
+		try (WavWriter writer = new WavWriter(file, 44100, 1)) {
+			writer.appendAudioBytes(new byte[audioLen]);
+			writer.insertMetadataTag(WavFile.NAME_TAG, "Jan");
+			writer.insertMetadataTag(WavFile.TITLE_TAG, "Lecture: part 1");
+			writer.insertMetadataTag(WavFile.COMMENT_TAG, "");
+		}
+		return file;
+	}
+
+	@Test
+	public void probe_readsFormatAndMetadata() throws IOException {
+		File file = writeRecording(4096);
+
+		WavFile wav = WavFile.probe(file);
+
+		assertNotNull(wav);
+		assertEquals(44100, wav.getSampleRate());
+		assertEquals(1, wav.getChannels());
+		assertEquals(4096, wav.getAudioLength());
+		assertEquals("Jan", wav.getMetadata(WavFile.NAME_TAG));
+		assertEquals("Lecture: part 1", wav.getMetadata(WavFile.TITLE_TAG));
+		assertEquals("", wav.getMetadata(WavFile.COMMENT_TAG));
+	}
+
+	@Test
+	public void probe_matchesFromFile() throws IOException {
+		File file = writeRecording(1000);
+
+		WavFile probed = WavFile.probe(file);
+		WavFile loaded = WavFile.fromFile(file);
+
+		assertNotNull(probed);
+		assertNotNull(loaded);
+		for (String tag : new String[]{WavFile.NAME_TAG, WavFile.SURNAME_TAG, WavFile.DATE_TAG,
+				WavFile.TIME_TAG, WavFile.TITLE_TAG, WavFile.COMMENT_TAG}) {
+			assertEquals(tag, loaded.getMetadata(tag), probed.getMetadata(tag));
+		}
+	}
+
+	@Test
+	public void probe_neverReadsAudioBytes() throws IOException {
+		int audioLen = 1 << 20;
+		File file = writeRecording(audioLen);
+
+		try (RecordingChannel channel = new RecordingChannel(
+				Files.newByteChannel(file.toPath(), StandardOpenOption.READ))) {
+			WavFile wav = WavFile.probe(channel);
+
+			assertNotNull(wav);
+			assertEquals("Jan", wav.getMetadata(WavFile.NAME_TAG));
+			assertFalse("audio payload was read",
+					channel.readOverlaps(AUDIO_START, AUDIO_START + audioLen));
+			assertTrue(channel.bytesRead < 1024);
+		}
+	}
+
+	@Test
+	public void probe_rejectsTruncatedHeader() throws IOException {
+		File file = folder.newFile("truncated.wav");
+		Files.write(file.toPath(), new byte[]{'R', 'I', 'F', 'F'});
+
+		assertNull(WavFile.probe(file));
+	}
+
+	@Test
+	public void probe_toleratesMissingMetadata() throws IOException {
+		File file = folder.newFile("plain.wav");
+		WavFile wav = new WavFile(8000, 1);
+		wav.appendAudioBytes(new byte[16]);
+		byte[] bytes = wav.toByteArray();
+		Files.write(file.toPath(), Arrays.copyOf(bytes, AUDIO_START + 16));
+
+		WavFile probed = WavFile.probe(file);
+
+		assertNotNull(probed);
+		assertEquals(8000, probed.getSampleRate());
+		assertNull(probed.getMetadata(WavFile.TITLE_TAG));
+	}
+
+	@Test
+	public void restoreTimeline_putsTrimmedSilenceBack() throws IOException {
+		VadCorpus corpus = VadCorpus.standard();
+		ByteBuffer audio = corpus.toBytes();
+		File trimmed = folder.newFile("trimmed.wav");
+		File restored = folder.newFile("restored.wav");
+
+		VoiceActivityDetector detector = new VoiceActivityDetector(VadCorpus.SAMPLE_RATE);
+		ByteBuffer kept = ByteBuffer.allocate(audio.capacity());
+		try (WavWriter writer = new WavWriter(trimmed, VadCorpus.SAMPLE_RATE, 1)) {
+			writer.insertMetadataTag(WavFile.TITLE_TAG, "corpus");
+			IAudioSink sink = new IAudioSink() {
+				@Override
+				public void appendAudioBytes(ByteBuffer audioBlock) throws IOException {
+					ByteBuffer copy = audioBlock.duplicate();
+					int from = kept.position();
+					writer.appendAudioBytes(audioBlock);
+					// mirror of the original timeline: kept bytes at their original offset
+					kept.position(from);
+					kept.put(copy);
+				}
+
+				@Override
+				public void skipAudioBytes(long byteCount) {
+					writer.skipAudioBytes(byteCount);
+					kept.position(kept.position() + (int) byteCount);
+				}
+			};
+
+			int blockBytes = AudioGrabbingTask.BUFFER_SIZE * 2;
+			for (int offset = 0; offset < audio.capacity(); offset += blockBytes) {
+				audio.limit(Math.min(offset + blockBytes, audio.capacity())).position(offset);
+				detector.process(audio, sink);
+			}
+			detector.finish(sink);
+		}
+		assertEquals(audio.capacity(), kept.position());
+
+		WavFile trimmedWav = WavFile.probe(trimmed);
+		assertNotNull(trimmedWav);
+		assertTrue(trimmedWav.getAudioLength() < audio.capacity() / 2);
+		assertEquals(corpus.length() * 1000L / VadCorpus.SAMPLE_RATE,
+				trimmedWav.getOriginalDurationMillis());
+
+		assertTrue(WavFile.restoreTimeline(trimmed, restored));
+
+		WavFile restoredWav = WavFile.fromFile(restored);
+		assertNotNull(restoredWav);
+		assertEquals(audio.capacity(), restoredWav.getAudioLength());
+		assertTrue(restoredWav.getSilenceIndex().isEmpty());
+		assertEquals("corpus", restoredWav.getMetadata(WavFile.TITLE_TAG));
+		assertArrayEquals(kept.array(), Arrays.copyOfRange(restoredWav.toByteArray(),
+				AUDIO_START, AUDIO_START + audio.capacity()));
+	}
+
+	@Test
+	public void mergeFiles_keepsSilenceIndexes() throws IOException {
+		File base = folder.newFile("base.wav");
+		File other = folder.newFile("other.wav");
+		try (WavWriter writer = new WavWriter(base, 8000, 1)) {
+			writer.appendAudioBytes(new byte[100]);
+			writer.skipAudioBytes(50);
+			writer.appendAudioBytes(new byte[20]);
+		}
+		try (WavWriter writer = new WavWriter(other, 8000, 1)) {
+			writer.skipAudioBytes(10);
+			writer.appendAudioBytes(new byte[40]);
+			writer.skipAudioBytes(30);
+		}
+
+		assertTrue(WavFile.mergeFiles(base, Collections.singletonList(other)));
+
+		WavFile merged = WavFile.probe(base);
+		assertNotNull(merged);
+		assertEquals(160, merged.getAudioLength());
+		SilenceIndex silence = merged.getSilenceIndex();
+		assertEquals(3, silence.getSegmentCount());
+		assertEquals(50, silence.getPosition(0));
+		assertEquals(25, silence.getLength(0));
+		assertEquals(60, silence.getPosition(1));
+		assertEquals(5, silence.getLength(1));
+		assertEquals(80, silence.getPosition(2));
+		assertEquals(15, silence.getLength(2));
+	}
+
+	@Test
+	public void mergeFiles_concatenatesAudioBehindBaseHeader() throws IOException {
+		File base = folder.newFile("base.wav");
+		byte[][] parts = {new byte[300], new byte[128], new byte[2048]};
+		ArrayList<File> others = new ArrayList<>();
+		for (int i = 0; i < parts.length; i++) {
+			for (int j = 0; j < parts[i].length; j++)
+				parts[i][j] = (byte) (31 * i + j);
+			File file = i == 0 ? base : folder.newFile("part" + i + ".wav");
+			try (WavWriter writer = new WavWriter(file, 16000, 2)) {
+				writer.appendAudioBytes(parts[i]);
+				if (i == 0) writer.insertMetadataTag(WavFile.TITLE_TAG, "Base");
+				else writer.insertMetadataTag(WavFile.TITLE_TAG, "Part " + i);
+			}
+			if (i > 0) others.add(file);
+		}
+
+		assertTrue(WavFile.mergeFiles(base, others));
+
+		ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(base.toPath()))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		int audioLen = parts[0].length + parts[1].length + parts[2].length;
+		assertEquals(bytes.capacity() - 8, bytes.getInt(4));
+		assertEquals(audioLen, bytes.getInt(AUDIO_START - 4));
+		int offset = AUDIO_START;
+		for (byte[] part : parts) {
+			assertArrayEquals(part, Arrays.copyOfRange(bytes.array(), offset,
+					offset + part.length));
+			offset += part.length;
+		}
+
+		WavFile merged = WavFile.probe(base);
+		assertNotNull(merged);
+		assertEquals(audioLen, merged.getAudioLength());
+		assertEquals("Base", merged.getMetadata(WavFile.TITLE_TAG));
+		assertFalse(new File(base.getPath() + ".tmp").exists());
+	}
+
+	@Test
+	public void metadataIsStoredAsSizedInfoChunk() throws IOException {
+		File file = writeRecording(1000);
+		ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath()))
+				.order(ByteOrder.LITTLE_ENDIAN);
+
+		assertEquals(bytes.capacity() - 8, bytes.getInt(4));
+		assertEquals("LIST", new String(bytes.array(), AUDIO_START + 1000, 4,
+				StandardCharsets.US_ASCII));
+		assertEquals(bytes.capacity() - AUDIO_START - 1000 - 8, bytes.getInt(AUDIO_START + 1004));
+		assertEquals("INFO", new String(bytes.array(), AUDIO_START + 1008, 4,
+				StandardCharsets.US_ASCII));
+		assertTrue(new String(bytes.array(), StandardCharsets.US_ASCII).contains("INAM"));
+	}
+
+	@Test
+	public void metadata_keepsSeparatorsAndNonAsciiText() throws IOException {
+		String comment = "Za\u017c\u00f3\u0142\u0107 g\u0119\u015bl\u0105";
+		File file = folder.newFile("separators.wav");
+		try (WavWriter writer = new WavWriter(file, 8000, 1)) {
+			writer.appendAudioBytes(new byte[64]);
+			writer.insertMetadataTag(WavFile.TITLE_TAG, "Talk: a;b:c;");
+			writer.insertMetadataTag(WavFile.COMMENT_TAG, comment);
+			writer.insertMetadataTag(WavFile.NAME_TAG, "odd");
+		}
+
+		WavFile probed = WavFile.probe(file);
+		WavFile loaded = WavFile.fromFile(file);
+
+		for (WavFile wav : new WavFile[]{probed, loaded}) {
+			assertNotNull(wav);
+			assertEquals("Talk: a;b:c;", wav.getMetadata(WavFile.TITLE_TAG));
+			assertEquals(comment, wav.getMetadata(WavFile.COMMENT_TAG));
+			assertEquals("odd", wav.getMetadata(WavFile.NAME_TAG));
+			assertNull(wav.getMetadata(WavFile.SURNAME_TAG));
+			assertEquals(64, wav.getAudioLength());
+		}
+	}
+
+	@Test
+	public void probe_readsLegacyId3Trailer() throws IOException {
+		// layout written before the INFO chunk: RIFF size without the trailer, then the
+		// silence index and a bare "id3 " text
+		WavFile old = new WavFile(8000, 1);
+		old.appendAudioBytes(new byte[100]);
+		SilenceIndex silence = new SilenceIndex();
+		silence.add(10, 40);
+		byte[] legacy = "id3 NAME:Jan;TITL:Old title;".getBytes(StandardCharsets.UTF_8);
+
+		ByteBuffer bytes = ByteBuffer.allocate(AUDIO_START + 100 + silence.toChunk().length +
+				legacy.length);
+		bytes.put(old.getHeader()).put(new byte[100]).put(silence.toChunk()).put(legacy);
+		File file = folder.newFile("legacy.wav");
+		Files.write(file.toPath(), bytes.array());
+
+		WavFile probed = WavFile.probe(file);
+
+		assertNotNull(probed);
+		assertEquals(100, probed.getAudioLength());
+		assertEquals("Jan", probed.getMetadata(WavFile.NAME_TAG));
+		assertEquals("Old title", probed.getMetadata(WavFile.TITLE_TAG));
+		assertEquals(40, probed.getSilenceIndex().getTotalLength());
+		try (WavWriter writer = WavWriter.recover(file)) {
+			assertEquals(100, writer.getAudioLength());
+		}
+	}
+
+	@Test
+	public void updateMetadata_rewritesOnlyTheTrailer() throws IOException {
+		File file = folder.newFile("edit.wav");
+		byte[] audio = new byte[4000];
+		for (int i = 0; i < audio.length; i++)
+			audio[i] = (byte) (i * 7);
+		try (WavWriter writer = new WavWriter(file, 8000, 1)) {
+			writer.appendAudioBytes(audio);
+			writer.skipAudioBytes(60);
+			writer.insertMetadataTag(WavFile.NAME_TAG, "Jan");
+			writer.insertMetadataTag(WavFile.TITLE_TAG, "short");
+		}
+		byte[] before = Files.readAllBytes(file.toPath());
+
+		HashMap<String, String> changes = new HashMap<>();
+		changes.put(WavFile.TITLE_TAG, "a considerably longer title than before");
+		changes.put(WavFile.COMMENT_TAG, "new; comment");
+		assertTrue(WavFile.updateMetadata(file, changes));
+
+		byte[] after = Files.readAllBytes(file.toPath());
+		assertArrayEquals(Arrays.copyOfRange(before, 8, AUDIO_START + audio.length),
+				Arrays.copyOfRange(after, 8, AUDIO_START + audio.length));
+		assertEquals(after.length - 8, ByteBuffer.wrap(after).order(ByteOrder.LITTLE_ENDIAN)
+				.getInt(4));
+
+		WavFile probed = WavFile.probe(file);
+		assertNotNull(probed);
+		assertEquals("a considerably longer title than before",
+				probed.getMetadata(WavFile.TITLE_TAG));
+		assertEquals("new; comment", probed.getMetadata(WavFile.COMMENT_TAG));
+		assertEquals("Jan", probed.getMetadata(WavFile.NAME_TAG));
+		assertEquals(30, probed.getSilenceIndex().getTotalLength());
+
+		// shrinking truncates the file again
+		changes.clear();
+		changes.put(WavFile.TITLE_TAG, null);
+		changes.put(WavFile.COMMENT_TAG, null);
+		assertTrue(WavFile.updateMetadata(file, changes));
+
+		assertTrue(file.length() < before.length);
+		probed = WavFile.probe(file);
+		assertNotNull(probed);
+		assertNull(probed.getMetadata(WavFile.TITLE_TAG));
+		assertEquals("Jan", probed.getMetadata(WavFile.NAME_TAG));
+		assertEquals(30, probed.getSilenceIndex().getTotalLength());
+	}
+
+	@Test
+	public void updateMetadata_convertsLegacyTrailer() throws IOException {
+		WavFile old = new WavFile(8000, 1);
+		old.appendAudioBytes(new byte[100]);
+		byte[] legacy = "id3 NAME:Jan;TITL:Old title;".getBytes(StandardCharsets.UTF_8);
+		File file = folder.newFile("legacy.wav");
+		Files.write(file.toPath(), ByteBuffer.allocate(AUDIO_START + 100 + legacy.length)
+				.put(old.getHeader()).put(new byte[100]).put(legacy).array());
+
+		assertTrue(WavFile.updateMetadata(file,
+				Collections.singletonMap(WavFile.TITLE_TAG, "New title")));
+
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		assertTrue(InfoChunk.startsWithChunk(bytes, AUDIO_START + 100));
+		WavFile probed = WavFile.probe(file);
+		assertNotNull(probed);
+		assertEquals("New title", probed.getMetadata(WavFile.TITLE_TAG));
+		assertEquals("Jan", probed.getMetadata(WavFile.NAME_TAG));
+	}
+
+	@Test
+	public void wideFormatsAreWrittenAsExtensible() throws IOException {
+		SampleFormat[] formats = {SampleFormat.PCM_16, SampleFormat.PCM_24,
+				SampleFormat.FLOAT_32, SampleFormat.PCM_16};
+		int[] channels = {2, 1, 2, 4};
+		int[] formatTags = {1, 0xfffe, 0xfffe, 0xfffe};
+
+		for (int i = 0; i < formats.length; i++) {
+			File file = folder.newFile();
+			int blockAlign = channels[i] * formats[i].getBytesPerSample();
+			try (WavWriter writer = new WavWriter(file, 48000, channels[i], formats[i])) {
+				writer.appendAudioBytes(new byte[blockAlign * 10]);
+			}
+
+			ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file.toPath()))
+					.order(ByteOrder.LITTLE_ENDIAN);
+			WavFile wav = WavFile.probe(file);
+
+			assertEquals(formatTags[i], header.getShort(20) & 0xffff);
+			assertNotNull(wav);
+			assertEquals(formats[i], wav.getSampleFormat());
+			assertEquals(channels[i], wav.getChannels());
+			assertEquals(blockAlign * 10, wav.getAudioLength());
+			assertEquals(48000L * blockAlign, wav.getBytesPerSecond());
+		}
+	}
+
+	@Test
+	public void probe_readsPlainFloatFormat() throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate(12 + 26 + 8 + 8).order(ByteOrder.LITTLE_ENDIAN);
+		bytes.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(bytes.capacity() - 8)
+				.put("WAVE".getBytes(StandardCharsets.US_ASCII));
+		// 18-byte format chunk with an empty extension, as most tools write float
+		bytes.put("fmt ".getBytes(StandardCharsets.US_ASCII)).putInt(18)
+				.putShort((short) 3).putShort((short) 1).putInt(32000).putInt(128000)
+				.putShort((short) 4).putShort((short) 32).putShort((short) 0);
+		bytes.put("data".getBytes(StandardCharsets.US_ASCII)).putInt(8)
+				.putFloat(0.5f).putFloat(-0.5f);
+		File file = folder.newFile("float.wav");
+		Files.write(file.toPath(), bytes.array());
+
+		WavFile wav = WavFile.probe(file);
+
+		assertNotNull(wav);
+		assertEquals(SampleFormat.FLOAT_32, wav.getSampleFormat());
+		assertEquals(32000, wav.getSampleRate());
+		assertEquals(8, wav.getAudioLength());
+		assertEquals(46, wav.getAudioOffset());
+	}
+
+	@Test
+	public void mergeFiles_rejectsDifferentFormats() throws IOException {
+		File base = folder.newFile("base.wav");
+		File other = folder.newFile("other.wav");
+		try (WavWriter writer = new WavWriter(base, 48000, 2)) {
+			writer.appendAudioBytes(new byte[400]);
+		}
+		try (WavWriter writer = new WavWriter(other, 48000, 2, SampleFormat.FLOAT_32)) {
+			writer.appendAudioBytes(new byte[800]);
+		}
+		byte[] before = Files.readAllBytes(base.toPath());
+
+		assertFalse(WavFile.mergeFiles(base, Collections.singletonList(other)));
+		assertArrayEquals(before, Files.readAllBytes(base.toPath()));
+	}
+
+	@Test
+	public void oddAudioLengthIsPaddedBeforeTheTrailer() throws IOException {
+		File file = folder.newFile("odd.wav");
+		byte[] audio = new byte[15];
+		Arrays.fill(audio, (byte) 0x7f);
+		try (WavWriter writer = new WavWriter(file, 8000, 1, SampleFormat.PCM_24)) {
+			writer.appendAudioBytes(audio);
+			writer.skipAudioBytes(30);
+			writer.insertMetadataTag(WavFile.TITLE_TAG, "Odd");
+		}
+
+		assertTrue(WavFile.updateMetadata(file,
+				Collections.singletonMap(WavFile.TITLE_TAG, "Ode")));
+
+		WavFile wav = WavFile.probe(file);
+		assertNotNull(wav);
+		assertEquals(15, wav.getAudioLength());
+		assertEquals("Ode", wav.getMetadata(WavFile.TITLE_TAG));
+		assertEquals(10, wav.getSilenceIndex().getTotalLength());
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		int audioEnd = (int) wav.getAudioOffset() + audio.length;
+		assertEquals(0, bytes[audioEnd]);
+		assertEquals(bytes.length - 8, ByteBuffer.wrap(bytes, 4, 4)
+				.order(ByteOrder.LITTLE_ENDIAN).getInt());
+
+		// the in-memory writer pads the same way
+		File copy = folder.newFile("copy.wav");
+		Files.write(copy.toPath(), WavFile.fromFile(file).toByteArray());
+		WavFile copied = WavFile.probe(copy);
+		assertNotNull(copied);
+		assertEquals("Ode", copied.getMetadata(WavFile.TITLE_TAG));
+		assertEquals(10, copied.getSilenceIndex().getTotalLength());
+		assertArrayEquals(bytes, Files.readAllBytes(copy.toPath()));
+	}
+
+	private static class RecordingChannel implements SeekableByteChannel {
+		private final SeekableByteChannel delegate;
+		private final ArrayList<long[]> reads = new ArrayList<>();
+		long bytesRead = 0;
+
+		RecordingChannel(SeekableByteChannel delegate) {
+			this.delegate = delegate;
+		}
+
+		boolean readOverlaps(long start, long end) {
+			for (long[] range : reads) {
+				if (range[0] < end && range[1] > start) return true;
+			}
+			return false;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			long start = delegate.position();
+			int read = delegate.read(dst);
+			if (read > 0) {
+				reads.add(new long[]{start, start + read});
+				bytesRead += read;
+			}
+			return read;
+		}
+
+		@Override
+		public int write(ByteBuffer src) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long position() throws IOException {
+			return delegate.position();
+		}
+
+		@Override
+		public SeekableByteChannel position(long newPosition) throws IOException {
+			delegate.position(newPosition);
+			return this;
+		}
+
+		@Override
+		public long size() throws IOException {
+			return delegate.size();
+		}
+
+		@Override
+		public SeekableByteChannel truncate(long size) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean isOpen() {
+			return delegate.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			delegate.close();
+		}
+	}
+}
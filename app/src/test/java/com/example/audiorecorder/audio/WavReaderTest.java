@@ -0,0 +1,120 @@
+package com.example.audiorecorder.audio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class WavReaderTest {
+
+	private static final int SAMPLE_RATE = 8000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	// sample of frame f, channel c is f * 10 + c, wrapped to 16 bits
+	private File writeRecording(int frames, int channels) throws IOException {
+		ByteBuffer audio = ByteBuffer.allocate(frames * channels * 2)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		for (int f = 0; f < frames; f++)
+			for (int c = 0; c < channels; c++)
+				audio.putShort((short) (f * 10 + c));
+		audio.flip();
+
+		File file = folder.newFile();
+		try (WavWriter writer = new WavWriter(file, SAMPLE_RATE, channels)) {
+			writer.appendAudioBytes(audio);
+			writer.insertMetadataTag(WavFile.TITLE_TAG, "mapped");
+		}
+		return file;
+	}
+
+	@Test
+	public void open_mapsOnlyTheAudio() throws IOException {
+		try (WavReader reader = WavReader.open(writeRecording(2 * SAMPLE_RATE, 1))) {
+			assertEquals(2 * SAMPLE_RATE, reader.getFrameCount());
+			assertEquals(2000, reader.getDurationMillis());
+			assertEquals(2 * SAMPLE_RATE, reader.getSamples().remaining());
+			assertEquals("mapped", reader.getWavFile().getMetadata(WavFile.TITLE_TAG));
+		}
+	}
+
+	@Test
+	public void getSample_indexesFramesAndChannels() throws IOException {
+		try (WavReader reader = WavReader.open(writeRecording(1000, 2))) {
+			assertEquals(0, reader.getSample(0, 0));
+			assertEquals(1, reader.getSample(0, 1));
+			assertEquals(5001, reader.getSample(500, 1));
+			assertEquals(9990, reader.getSample(999, 0));
+		}
+	}
+
+	@Test
+	public void getRange_selectsFramesByTime() throws IOException {
+		try (WavReader reader = WavReader.open(writeRecording(SAMPLE_RATE, 2))) {
+			// 250 ms to 500 ms is frames 2000 to 4000
+			ShortBuffer range = reader.getRange(250, 500);
+
+			assertEquals(2 * 2000, range.remaining());
+			assertEquals((short) 20_000, range.get(0));
+			assertEquals((short) (3999 * 10 + 1), range.get(range.limit() - 1));
+			assertTrue(range.isReadOnly());
+		}
+	}
+
+	@Test
+	public void getFrames_clampsToRecording() throws IOException {
+		try (WavReader reader = WavReader.open(writeRecording(100, 1))) {
+			assertEquals(10, reader.getFrames(90, 500).remaining());
+			assertEquals(0, reader.getFrames(200, 300).remaining());
+			assertEquals(5, reader.getFrames(-10, 5).remaining());
+		}
+	}
+
+	@Test
+	public void read_copiesAvailableFrames() throws IOException {
+		try (WavReader reader = WavReader.open(writeRecording(100, 2))) {
+			short[] dst = new short[20];
+
+			assertEquals(3, reader.read(97, dst, 4, 10));
+			assertEquals(970, dst[4]);
+			assertEquals(991, dst[9]);
+			assertEquals(0, dst[10]);
+		}
+	}
+
+	@Test
+	public void open_findsDataChunkAfterOtherChunks() throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), RiffChunkIteratorTest.foreignWav(99));
+
+		try (WavReader reader = WavReader.open(file)) {
+			assertEquals(2, reader.getChannels());
+			assertEquals(24, reader.getFrameCount());
+			// the data chunk body counts up from 1
+			assertEquals(0x0201, reader.getSample(0, 0));
+			assertEquals(0x0403, reader.getSample(0, 1));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void close_rejectsFurtherAccess() throws IOException {
+		WavReader reader = WavReader.open(writeRecording(100, 1));
+		reader.close();
+
+		reader.getSample(0, 0);
+	}
+
+	@Test(expected = IOException.class)
+	public void open_rejectsNonWavFile() throws IOException {
+		WavReader.open(folder.newFile());
+	}
+}
@@ -0,0 +1,243 @@
+package com.example.audiorecorder.audio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class WavWriterTest {
+
+	private static final int AUDIO_START = 44;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static byte[] pcm(int length, int seed) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+			bytes[i] = (byte) (i * 31 + seed);
+		return bytes;
+	}
+
+	private static byte[] concat(byte[] first, byte[] second) {
+		byte[] result = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, result, first.length, second.length);
+		return result;
+	}
+
+	private static byte[] audioOf(File file) throws IOException {
+		WavFile wav = WavFile.fromFile(file);
+		assertNotNull(wav);
+		byte[] bytes = wav.toByteArray();
+		int audioStart = wav.getHeaderLength();
+		return Arrays.copyOfRange(bytes, audioStart, audioStart + (int) wav.getAudioLength());
+	}
+
+	@Test
+	public void recover_repairsHeaderOfKilledDraft() throws IOException {
+		File draft = folder.newFile("draft.wav");
+		byte[] audio = pcm(1000, 1);
+
+		// header still carries the zero sizes written when recording started, plus a torn sample
+		byte[] contents = Arrays.copyOf(new WavFile(44100, 1).getHeader(),
+				AUDIO_START + audio.length + 1);
+		System.arraycopy(audio, 0, contents, AUDIO_START, audio.length);
+		Files.write(draft.toPath(), contents);
+
+		try (WavWriter writer = WavWriter.recover(draft)) {
+			assertEquals(audio.length, writer.getAudioLength());
+		}
+
+		WavFile probed = WavFile.probe(draft);
+		assertNotNull(probed);
+		assertEquals(44100, probed.getSampleRate());
+		assertEquals(audio.length, probed.getAudioLength());
+		assertArrayEquals(audio, audioOf(draft));
+	}
+
+	@Test
+	public void recover_dropsMetadataTrailerOfFinishedFile() throws IOException {
+		File file = folder.newFile("finished.wav");
+		byte[] audio = pcm(512, 2);
+		try (WavWriter writer = new WavWriter(file, 8000, 1)) {
+			writer.appendAudioBytes(audio);
+			writer.insertMetadataTag(WavFile.TITLE_TAG, "old title");
+		}
+
+		WavWriter writer = WavWriter.recover(file);
+		writer.closeUnfinished();
+
+		assertEquals(AUDIO_START + audio.length, file.length());
+		assertArrayEquals(audio, audioOf(file));
+	}
+
+	@Test
+	public void recover_continuesAppending() throws IOException {
+		File draft = folder.newFile("draft.wav");
+		byte[] first = pcm(2048, 3);
+		byte[] second = pcm(4096, 4);
+
+		WavWriter writer = new WavWriter(draft, 44100, 1);
+		writer.appendAudioBytes(first);
+		writer.closeUnfinished();
+
+		try (WavWriter resumed = WavWriter.recover(draft)) {
+			resumed.appendAudioBytes(second);
+			resumed.insertMetadataTag(WavFile.NAME_TAG, "Jan");
+		}
+
+		WavFile probed = WavFile.probe(draft);
+		assertNotNull(probed);
+		assertEquals(first.length + second.length, probed.getAudioLength());
+		assertEquals("Jan", probed.getMetadata(WavFile.NAME_TAG));
+		assertArrayEquals(concat(first, second), audioOf(draft));
+	}
+
+	@Test
+	public void recover_keepsExtensibleFormat() throws IOException {
+		File draft = folder.newFile("draft.wav");
+		byte[] first = pcm(600, 7);
+		byte[] second = pcm(1200, 8);
+
+		WavWriter writer = new WavWriter(draft, 48000, 2, SampleFormat.PCM_24);
+		writer.appendAudioBytes(first);
+		writer.closeUnfinished();
+
+		try (WavWriter resumed = WavWriter.recover(draft)) {
+			assertEquals(SampleFormat.PCM_24, resumed.getSampleFormat());
+			resumed.appendAudioBytes(second);
+		}
+
+		WavFile probed = WavFile.probe(draft);
+		assertNotNull(probed);
+		assertEquals(48000, probed.getSampleRate());
+		assertEquals(2, probed.getChannels());
+		assertEquals(SampleFormat.PCM_24, probed.getSampleFormat());
+		assertEquals(68, probed.getAudioOffset());
+		assertArrayEquals(concat(first, second), audioOf(draft));
+	}
+
+	@Test(expected = IOException.class)
+	public void recover_rejectsNonWavFile() throws IOException {
+		File file = folder.newFile("garbage.wav");
+		Files.write(file.toPath(), new byte[]{'R', 'I', 'F', 'F'});
+
+		WavWriter.recover(file);
+	}
+
+	@Test
+	public void silenceIndexSurvivesFlushRecoverAndClose() throws IOException {
+		File draft = folder.newFile("draft.wav");
+		byte[] audio = pcm(400, 5);
+
+		WavWriter writer = new WavWriter(draft, 8000, 1);
+		writer.skipAudioBytes(1000);
+		writer.appendAudioBytes(audio);
+		writer.skipAudioBytes(200);
+		writer.skipAudioBytes(100);
+		writer.flush();
+		writer.closeUnfinished();
+
+		try (WavWriter resumed = WavWriter.recover(draft)) {
+			assertEquals(audio.length, resumed.getAudioLength());
+			resumed.appendAudioBytes(audio);
+			resumed.skipAudioBytes(64);
+		}
+
+		WavFile probed = WavFile.probe(draft);
+		assertNotNull(probed);
+		assertEquals(audio.length * 2, probed.getAudioLength());
+		assertArrayEquals(concat(audio, audio), audioOf(draft));
+
+		SilenceIndex silence = probed.getSilenceIndex();
+		assertEquals(3, silence.getSegmentCount());
+		assertEquals(0, silence.getPosition(0));
+		assertEquals(500, silence.getLength(0));
+		assertEquals(200, silence.getPosition(1));
+		assertEquals(150, silence.getLength(1));
+		assertEquals(400, silence.getPosition(2));
+		assertEquals(32, silence.getLength(2));
+		assertEquals(500 + 200 + 150, silence.toOriginalFrame(200));
+	}
+
+	@Test
+	public void oddAudioLengthSurvivesFlushRecoverAndClose() throws IOException {
+		File draft = folder.newFile("draft.wav");
+		byte[] audio = pcm(41, 8);
+		byte[] more = pcm(40, 9);
+
+		WavWriter writer = new WavWriter(draft, 8000, 1, SampleFormat.PCM_8);
+		writer.appendAudioBytes(audio);
+		writer.skipAudioBytes(20);
+		writer.closeUnfinished();
+
+		try (WavWriter resumed = WavWriter.recover(draft)) {
+			assertEquals(audio.length, resumed.getAudioLength());
+			resumed.appendAudioBytes(more);
+			resumed.insertMetadataTag(WavFile.TITLE_TAG, "Odd");
+		}
+
+		WavFile probed = WavFile.probe(draft);
+		assertNotNull(probed);
+		assertEquals(audio.length + more.length, probed.getAudioLength());
+		assertEquals("Odd", probed.getMetadata(WavFile.TITLE_TAG));
+		assertEquals(20, probed.getSilenceIndex().getTotalLength());
+		assertArrayEquals(concat(audio, more), audioOf(draft));
+	}
+
+	@Test
+	public void recover_keepsAudioWrittenOverAFlushedTrailer() throws IOException {
+		File draft = folder.newFile("draft.wav");
+		byte[] first = pcm(256, 6);
+		byte[] second = pcm(512, 7);
+
+		WavWriter writer = new WavWriter(draft, 8000, 1);
+		writer.appendAudioBytes(first);
+		writer.skipAudioBytes(1000);
+		writer.closeUnfinished();
+
+		// killed while recording again: new audio overwrote the trailer, the header is stale
+		try (FileChannel channel = FileChannel.open(draft.toPath(), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(second), AUDIO_START + first.length);
+		}
+
+		try (WavWriter resumed = WavWriter.recover(draft)) {
+			assertEquals(first.length + second.length, resumed.getAudioLength());
+		}
+		assertArrayEquals(concat(first, second), audioOf(draft));
+	}
+
+	@Test
+	public void recover_dropsWhatIsLeftOfAPartlyOverwrittenTrailer() throws IOException {
+		File draft = folder.newFile("draft.wav");
+		byte[] first = pcm(256, 6);
+		byte[] second = pcm(16, 7);
+
+		WavWriter writer = new WavWriter(draft, 8000, 1);
+		writer.skipAudioBytes(1000);
+		writer.appendAudioBytes(first);
+		writer.skipAudioBytes(1000);
+		writer.closeUnfinished();
+		long flushedSize = draft.length();
+
+		// killed while recording again, before the new audio got past the flushed trailer
+		try (FileChannel channel = FileChannel.open(draft.toPath(), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(second), AUDIO_START + first.length);
+		}
+		assertEquals(flushedSize, draft.length());
+
+		try (WavWriter resumed = WavWriter.recover(draft)) {
+			assertEquals(first.length, resumed.getAudioLength());
+		}
+		assertArrayEquals(first, audioOf(draft));
+	}
+}
@@ -0,0 +1,129 @@
+package com.example.audiorecorder.audio;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class WaveformSummaryTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File writeRecording(int channels, short[] samples) throws IOException {
+		ByteBuffer audio = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+		for (short sample : samples)
+			audio.putShort(sample);
+
+		File file = folder.newFile();
+		try (WavWriter writer = new WavWriter(file, 44100, channels)) {
+			writer.appendAudioBytes(audio.array());
+			writer.insertMetadataTag(WavFile.TITLE_TAG, "waveform");
+		}
+		return file;
+	}
+
+	@Test
+	public void compute_tracksMinAndMaxPerBucket() throws IOException {
+		// four buckets of 100 000 frames each, so the audio spans several read chunks
+		short[] samples = new short[400_000];
+		for (int i = 0; i < samples.length; i++)
+			samples[i] = (short) ((i % 2 == 0 ? 1 : -1) * (i / 100_000 + 1) * 1000);
+		samples[250_000] = Short.MIN_VALUE;
+
+		WaveformSummary waveform = WaveformSummary.compute(writeRecording(1, samples), 4);
+
+		assertNotNull(waveform);
+		assertEquals(4, waveform.getBucketCount());
+		assertEquals(-1000, waveform.getMin(0));
+		assertEquals(1000, waveform.getMax(0));
+		assertEquals(-2000, waveform.getMin(1));
+		assertEquals(Short.MIN_VALUE, waveform.getMin(2));
+		assertEquals(3000, waveform.getMax(2));
+		assertEquals(4000, waveform.getMax(3));
+	}
+
+	@Test
+	public void compute_scalesOtherFormatsToSixteenBit() throws IOException {
+		File file = folder.newFile();
+		ByteBuffer audio = ByteBuffer.allocate(4 * 4 * 2).order(ByteOrder.LITTLE_ENDIAN);
+		for (int frame = 0; frame < 4; frame++)
+			audio.putFloat(frame < 2 ? 0.5f : -1f).putFloat(frame < 2 ? -0.25f : 2f);
+		try (WavWriter writer = new WavWriter(file, 48000, 2, SampleFormat.FLOAT_32)) {
+			writer.appendAudioBytes(audio.array());
+		}
+
+		WaveformSummary waveform = WaveformSummary.compute(file, 2);
+
+		assertNotNull(waveform);
+		assertEquals(-8191, waveform.getMin(0));
+		assertEquals(16383, waveform.getMax(0));
+		// out of range float samples are clipped
+		assertEquals(Short.MIN_VALUE + 1, waveform.getMin(1));
+		assertEquals(Short.MAX_VALUE, waveform.getMax(1));
+	}
+
+	@Test
+	public void compute_shortRecordingLeavesBucketsFlat() throws IOException {
+		WaveformSummary waveform = WaveformSummary.compute(
+				writeRecording(1, new short[]{500, -700}), 8);
+
+		assertNotNull(waveform);
+		assertEquals(8, waveform.getBucketCount());
+
+		int nonEmpty = 0;
+		for (int i = 0; i < 8; i++) {
+			assertTrue(waveform.getMin(i) <= 0 && waveform.getMax(i) >= 0);
+			if (waveform.getMin(i) != 0 || waveform.getMax(i) != 0) nonEmpty++;
+		}
+		assertEquals(2, nonEmpty);
+	}
+
+	@Test
+	public void compute_stereoFramesStayInOneBucket() throws IOException {
+		// two frames, each with a quiet left and a loud right sample
+		WaveformSummary waveform = WaveformSummary.compute(
+				writeRecording(2, new short[]{10, 20_000, -10, -20_000}), 2);
+
+		assertNotNull(waveform);
+		assertEquals(20_000, waveform.getMax(0));
+		assertEquals(-20_000, waveform.getMin(1));
+	}
+
+	@Test
+	public void writeTo_roundTripsThroughReadFrom() throws IOException {
+		short[] samples = new short[1000];
+		for (int i = 0; i < samples.length; i++)
+			samples[i] = (short) (Math.sin(i / 10.0) * 12_000);
+		WaveformSummary waveform = WaveformSummary.compute(writeRecording(1, samples), 16);
+		assertNotNull(waveform);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		waveform.writeTo(new DataOutputStream(bytes));
+		WaveformSummary restored = WaveformSummary.readFrom(
+				new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertEquals(waveform.getBucketCount(), restored.getBucketCount());
+		for (int i = 0; i < waveform.getBucketCount(); i++) {
+			assertEquals(waveform.getMin(i), restored.getMin(i));
+			assertEquals(waveform.getMax(i), restored.getMax(i));
+		}
+	}
+
+	@Test
+	public void compute_rejectsNonWavFile() throws IOException {
+		File file = folder.newFile();
+
+		assertNull(WaveformSummary.compute(file, 4));
+	}
+}
@@ -0,0 +1,137 @@
+package com.example.audiorecorder.list;
+
+import com.example.audiorecorder.audio.WavFile;
+import com.example.audiorecorder.audio.WavWriter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class RecordingIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File writeRecording(String name, String title) throws IOException {
+		File file = new File(folder.getRoot(), name);
+		try (WavWriter writer = new WavWriter(file, 16000, 1)) {
+			writer.appendAudioBytes(new byte[320]);
+			writer.insertMetadataTag(WavFile.TITLE_TAG, title);
+			writer.insertMetadataTag(WavFile.NAME_TAG, "Jan");
+		}
+		return file;
+	}
+
+	private File indexFile() {
+		return new File(folder.getRoot(), ".index");
+	}
+
+	// the same title length, so the file keeps its size; the timestamp is put back as a
+	// coarse file system would leave it
+	private static void retitleKeepingLengthAndTime(File file, String title) {
+		long lastModified = file.lastModified();
+		assertTrue(WavFile.updateMetadata(file, Collections.singletonMap(WavFile.TITLE_TAG, title)));
+		assertTrue(file.setLastModified(lastModified));
+	}
+
+	@Test
+	public void save_roundTripsEntries() throws IOException {
+		File first = writeRecording("first.wav", "First");
+		File second = writeRecording("second.wav", "Second");
+		RecordingIndex index = new RecordingIndex(folder.getRoot());
+		index.getMetadata(first);
+		index.getMetadata(second);
+		index.save();
+		assertTrue(indexFile().exists());
+
+		// a reloaded index answers from the cache as long as length and time match
+		retitleKeepingLengthAndTime(first, "Fixed");
+		RecordingIndex reloaded = new RecordingIndex(folder.getRoot());
+
+		HashMap<String, String> metadata = reloaded.getMetadata(first);
+		assertEquals("First", metadata.get(WavFile.TITLE_TAG));
+		assertEquals("Jan", metadata.get(WavFile.NAME_TAG));
+		assertNull(metadata.get(WavFile.COMMENT_TAG));
+		assertEquals("Second", reloaded.getMetadata(second).get(WavFile.TITLE_TAG));
+	}
+
+	@Test
+	public void invalidate_rereadsEditedRecording() throws IOException {
+		File file = writeRecording("edited.wav", "First");
+		RecordingIndex index = new RecordingIndex(folder.getRoot());
+		index.getMetadata(file);
+		index.save();
+
+		retitleKeepingLengthAndTime(file, "Fixed");
+		index.invalidate(file);
+		index.save();
+
+		assertEquals("Fixed", index.getMetadata(file).get(WavFile.TITLE_TAG));
+		assertEquals("Fixed", new RecordingIndex(folder.getRoot()).getMetadata(file)
+				.get(WavFile.TITLE_TAG));
+	}
+
+	@Test
+	public void load_ignoresTruncatedOrCorruptIndex() throws IOException {
+		File file = writeRecording("recording.wav", "Title");
+		RecordingIndex index = new RecordingIndex(folder.getRoot());
+		index.getMetadata(file);
+		index.save();
+		byte[] saved = Files.readAllBytes(indexFile().toPath());
+
+		try (RandomAccessFile raf = new RandomAccessFile(indexFile(), "rw")) {
+			raf.setLength(saved.length / 2);
+		}
+		RecordingIndex truncated = new RecordingIndex(folder.getRoot());
+		assertEquals("Title", truncated.getMetadata(file).get(WavFile.TITLE_TAG));
+		// rewritten whole, even though the entry itself did not change
+		truncated.save();
+		assertArrayEquals(saved, Files.readAllBytes(indexFile().toPath()));
+
+		byte[] corrupt = Arrays.copyOf(saved, saved.length);
+		corrupt[0] ^= 0xff;
+		Files.write(indexFile().toPath(), corrupt);
+		RecordingIndex rejected = new RecordingIndex(folder.getRoot());
+		assertEquals("Title", rejected.getMetadata(file).get(WavFile.TITLE_TAG));
+		rejected.save();
+		assertArrayEquals(saved, Files.readAllBytes(indexFile().toPath()));
+	}
+
+	@Test
+	public void entriesOfChangedOrRemovedRecordingsAreEvicted() throws IOException {
+		File kept = writeRecording("kept.wav", "Kept");
+		File changed = writeRecording("changed.wav", "Short");
+		File removed = writeRecording("removed.wav", "Removed");
+		RecordingIndex index = new RecordingIndex(folder.getRoot());
+		for (File file : Arrays.asList(kept, changed, removed))
+			index.getMetadata(file);
+		index.save();
+
+		assertTrue(WavFile.updateMetadata(changed,
+				Collections.singletonMap(WavFile.TITLE_TAG, "A longer title")));
+		assertTrue(removed.delete());
+
+		RecordingIndex reloaded = new RecordingIndex(folder.getRoot());
+		reloaded.retainAll(Arrays.asList(kept, changed));
+		assertEquals("A longer title", reloaded.getMetadata(changed).get(WavFile.TITLE_TAG));
+		reloaded.save();
+
+		String saved = new String(Files.readAllBytes(indexFile().toPath()),
+				StandardCharsets.ISO_8859_1);
+		assertFalse(saved.contains(removed.getPath()));
+		assertFalse(saved.contains("Short"));
+		assertTrue(saved.contains("A longer title"));
+		assertNull(reloaded.getMetadata(removed));
+	}
+}
@@ -0,0 +1,78 @@
+package com.example.audiorecorder.audio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exporting a recording written by {@link WavWriter} to IMA-ADPCM with 1 to 8 encoding
+ * threads; 1 encodes on the calling thread. Throughput should grow with the thread count
+ * up to the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AdpcmExportBenchmark {
+
+	@Param({"60", "600"})
+	public int seconds;
+
+	@Param({"1", "2", "4", "8"})
+	public int threads;
+
+	private File recording;
+	private File output;
+	private ForkJoinPool pool;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		SyntheticAudioSource source = new SyntheticAudioSource(SyntheticAudioSource.Signal.NOISE,
+				AudioGrabbingTask.SAMPLE_RATE, 440, 8000, (long) AudioGrabbingTask.SAMPLE_RATE *
+				seconds);
+		ByteBuffer block = ByteBuffer.allocateDirect(AudioGrabbingTask.BUFFER_SIZE * 2)
+				.order(ByteOrder.LITTLE_ENDIAN);
+
+		recording = File.createTempFile("bench", ".wav");
+		output = File.createTempFile("bench-out", ".wav");
+		try (WavWriter writer = new WavWriter(recording, AudioGrabbingTask.SAMPLE_RATE, 1)) {
+			source.start();
+			while (source.read(block) > 0)
+				writer.appendAudioBytes(block);
+			writer.insertMetadataTag(WavFile.TITLE_TAG, "benchmark");
+		}
+
+		pool = threads > 1 ? new ForkJoinPool(threads) : null;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (pool != null) pool.shutdown();
+		recording.delete();
+		output.delete();
+	}
+
+	@Benchmark
+	public boolean encode() {
+		return AdpcmWavWriter.encode(recording, output, pool);
+	}
+}
@@ -0,0 +1,74 @@
+package com.example.audiorecorder.audio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioProcessingBenchmark {
+
+	@Param({"NOISE", "SILENCE_BURSTS"})
+	public SyntheticAudioSource.Signal signal;
+
+	private ByteBuffer block;
+	private VoiceActivityDetector voiceDetector;
+	private ImaAdpcmCodec adpcmCodec;
+	private ByteBuffer adpcmInput, adpcmOutput;
+	private final IAudioSink discardingSink = audioBlock -> audioBlock.position(audioBlock.limit());
+
+	@Setup
+	public void setUp() {
+		block = ByteBuffer.allocateDirect(AudioGrabbingTask.BUFFER_SIZE * 2)
+				.order(ByteOrder.LITTLE_ENDIAN);
+
+		SyntheticAudioSource source = new SyntheticAudioSource(signal,
+				AudioGrabbingTask.SAMPLE_RATE, 440, 8000, -1);
+		source.setBurstLength(AudioGrabbingTask.BUFFER_SIZE);
+		source.start();
+		source.read(block);
+
+		voiceDetector = new VoiceActivityDetector(AudioGrabbingTask.SAMPLE_RATE);
+
+		adpcmCodec = new ImaAdpcmCodec(1,
+				ImaAdpcmCodec.defaultBlockAlign(AudioGrabbingTask.SAMPLE_RATE, 1));
+		adpcmInput = ByteBuffer.allocateDirect(adpcmCodec.getSamplesPerBlock() * 2)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		source.read(adpcmInput);
+		adpcmOutput = ByteBuffer.allocateDirect(adpcmCodec.getBlockAlign())
+				.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	// also gathers the block's peak and RMS for the level meter in the same pass;
+	// run with -prof gc to confirm the detector does not allocate
+	@Benchmark
+	public boolean voiceActivityDetection() throws IOException {
+		return voiceDetector.process(block, discardingSink);
+	}
+
+	// one block is about 46 ms of audio at 44.1 kHz, the encoder has to stay well under that
+	@Benchmark
+	public ByteBuffer adpcmEncoding() {
+		adpcmInput.clear();
+		adpcmOutput.clear();
+		adpcmCodec.encodeBlock(adpcmInput, adpcmOutput);
+		return adpcmOutput;
+	}
+}
@@ -0,0 +1,47 @@
+package com.example.audiorecorder.audio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end grabbing and processing of synthetic audio, faster than real time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class PipelineBenchmark {
+
+	@Param({"1", "60"})
+	public int seconds;
+
+	@Benchmark
+	public long grabAndProcess() throws InterruptedException {
+		AudioBufferPool pool = new AudioBufferPool(AudioGrabbingTask.BUFFER_COUNT,
+				AudioGrabbingTask.BUFFER_SIZE * 2);
+		long[] bytesWritten = new long[1];
+		IAudioSink output = block -> bytesWritten[0] += block.remaining();
+		SyntheticAudioSource source = new SyntheticAudioSource(
+				SyntheticAudioSource.Signal.SILENCE_BURSTS, AudioGrabbingTask.SAMPLE_RATE, 440,
+				8000, (long) seconds * AudioGrabbingTask.SAMPLE_RATE);
+
+		Thread processor = new Thread(new AudioProcessingTask(pool, output));
+		processor.start();
+		new AudioGrabbingTask(source, pool).run();
+		processor.join();
+
+		return bytesWritten[0];
+	}
+}
@@ -0,0 +1,65 @@
+package com.example.audiorecorder.audio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sample rate conversion of one capture block of {@link AudioGrabbingTask#BUFFER_SIZE}
+ * frames. A block lasts about 93 ms at 44.1 kHz, so the real-time factor is that over the
+ * measured time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResamplerBenchmark {
+
+	@Param({"44100:16000", "16000:44100", "48000:44100"})
+	public String rates;
+
+	@Param({"1", "2"})
+	public int channels;
+
+	private short[] block;
+	private short[] output;
+	private SampleRateConverter converter;
+
+	@Setup
+	public void setUp() {
+		String[] pair = rates.split(":");
+		int inputRate = Integer.parseInt(pair[0]);
+		converter = new SampleRateConverter(inputRate, Integer.parseInt(pair[1]), channels);
+
+		ByteBuffer pcm = ByteBuffer.allocateDirect(AudioGrabbingTask.BUFFER_SIZE * 2)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		SyntheticAudioSource source = new SyntheticAudioSource(
+				SyntheticAudioSource.Signal.NOISE, inputRate, 0, 8000, -1);
+		source.start();
+		source.read(pcm);
+
+		block = new short[AudioGrabbingTask.BUFFER_SIZE * channels];
+		for (int i = 0; i < block.length; i++)
+			block[i] = pcm.getShort((i / channels) * 2);
+		output = new short[converter.getMaxOutputFrames(AudioGrabbingTask.BUFFER_SIZE) * channels];
+	}
+
+	@Benchmark
+	public int resample() {
+		return converter.process(block, 0, AudioGrabbingTask.BUFFER_SIZE, output, 0);
+	}
+}
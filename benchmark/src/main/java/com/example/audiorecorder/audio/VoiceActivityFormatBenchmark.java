@@ -0,0 +1,76 @@
+package com.example.audiorecorder.audio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Voice activity detection over one capture block per sample format and channel count. The
+ * block always holds {@link AudioGrabbingTask#BUFFER_SIZE} frames, so the cost per frame is
+ * comparable across formats.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoiceActivityFormatBenchmark {
+
+	@Param({"PCM_16", "PCM_24", "FLOAT_32"})
+	public SampleFormat format;
+
+	@Param({"1", "2"})
+	public int channels;
+
+	private ByteBuffer block;
+	private VoiceActivityDetector voiceDetector;
+	private final IAudioSink discardingSink = audioBlock -> audioBlock.position(audioBlock.limit());
+
+	@Setup
+	public void setUp() {
+		ByteBuffer pcm = ByteBuffer.allocateDirect(AudioGrabbingTask.BUFFER_SIZE * 2)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		SyntheticAudioSource source = new SyntheticAudioSource(
+				SyntheticAudioSource.Signal.SILENCE_BURSTS, AudioGrabbingTask.SAMPLE_RATE, 440,
+				8000, -1);
+		source.setBurstLength(AudioGrabbingTask.BUFFER_SIZE / 2);
+		source.start();
+		source.read(pcm);
+
+		block = ByteBuffer.allocateDirect(AudioGrabbingTask.BUFFER_SIZE * channels *
+				format.getBytesPerSample()).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < AudioGrabbingTask.BUFFER_SIZE; i++) {
+			short sample = pcm.getShort(i * 2);
+			for (int c = 0; c < channels; c++) {
+				if (format == SampleFormat.FLOAT_32)
+					block.putFloat(sample / (float) Short.MAX_VALUE);
+				else if (format == SampleFormat.PCM_24)
+					block.put((byte) 0).putShort(sample);
+				else
+					block.putShort(sample);
+			}
+		}
+		block.flip();
+
+		voiceDetector = new VoiceActivityDetector(AudioGrabbingTask.SAMPLE_RATE, channels, format);
+	}
+
+	@Benchmark
+	public boolean voiceActivityDetection() throws IOException {
+		return voiceDetector.process(block, discardingSink);
+	}
+}
@@ -0,0 +1,127 @@
+package com.example.audiorecorder.audio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WAV building, serialisation, parsing and merging for recordings of 1 s to 60 min.
+ * The in-memory paths grow quadratically, so the long sizes take a while; narrow them
+ * with {@code -p seconds=1,60} for a quick run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = "-Xmx6g")
+public class WavFileBenchmark {
+
+	private static final int BLOCK_BYTES = AudioGrabbingTask.BUFFER_SIZE * 2;
+
+	@Param({"1", "60", "600", "3600"})
+	public int seconds;
+
+	private byte[] block;
+	private int blockCount;
+	private WavFile wavFile;
+	private File recording;
+	private File output;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		block = new byte[BLOCK_BYTES];
+		for (int i = 0; i < block.length; i++)
+			block[i] = (byte) (i * 31);
+
+		long audioBytes = 2L * AudioGrabbingTask.SAMPLE_RATE * seconds;
+		blockCount = (int) Math.max(1, audioBytes / BLOCK_BYTES);
+
+		recording = File.createTempFile("bench", ".wav");
+		output = File.createTempFile("bench-out", ".wav");
+		try (WavWriter writer = new WavWriter(recording, AudioGrabbingTask.SAMPLE_RATE, 1)) {
+			for (int i = 0; i < blockCount; i++)
+				writer.appendAudioBytes(block);
+			writer.insertMetadataTag(WavFile.TITLE_TAG, "benchmark");
+		}
+
+		wavFile = WavFile.fromFile(recording);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		recording.delete();
+		output.delete();
+	}
+
+	@Benchmark
+	public WavFile appendAudioBytes() {
+		WavFile wav = new WavFile(AudioGrabbingTask.SAMPLE_RATE, 1);
+		for (int i = 0; i < blockCount; i++)
+			wav.appendAudioBytes(block);
+		return wav;
+	}
+
+	@Benchmark
+	public long writeStreaming() throws IOException {
+		try (WavWriter writer = new WavWriter(output, AudioGrabbingTask.SAMPLE_RATE, 1)) {
+			for (int i = 0; i < blockCount; i++)
+				writer.appendAudioBytes(block);
+			return writer.getAudioLength();
+		}
+	}
+
+	@Benchmark
+	public byte[] toByteArray() {
+		return wavFile.toByteArray();
+	}
+
+	@Benchmark
+	public WavFile fromFile() {
+		return WavFile.fromFile(recording);
+	}
+
+	@Benchmark
+	public WavFile probe() {
+		return WavFile.probe(recording);
+	}
+
+	@Benchmark
+	public WavFile merged() {
+		return WavFile.merged(wavFile, wavFile);
+	}
+
+	@State(Scope.Thread)
+	public static class MergeTarget {
+		File baseFile;
+
+		@Setup(Level.Invocation)
+		public void copyBaseFile(WavFileBenchmark benchmark) throws IOException {
+			baseFile = benchmark.output;
+			Files.copy(benchmark.recording.toPath(), baseFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	@Benchmark
+	public boolean mergeFiles(MergeTarget target) {
+		return WavFile.mergeFiles(target.baseFile, Collections.singletonList(recording));
+	}
+}